@@ -0,0 +1,102 @@
+package bench;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import src.Accumulator;
+import src.Operator;
+import src.Value;
+
+/**
+ * Evaluates one accumulator per operator family. Each invocation cycles
+ * through every operator of the family with operands it accepts, so the
+ * score is the mix a program sees rather than one lucky branch.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AccumulatorBenchmark {
+
+    @Param({"math", "estimation", "trig", "bitwise", "boolean", "concatenation", "equality"})
+    public String family;
+
+    private Operator[] operators;
+    private Value[] lefts;
+    private Value[] rights;
+    private int next;
+    private final Accumulator accumulator = new Accumulator();
+
+    @Setup
+    public void setup() {
+        switch (family) {
+            case "math":
+                operators = new Operator[] {Operator.ADD, Operator.SUB, Operator.MULT, Operator.DIV, Operator.POW, Operator.MOD, Operator.NEG};
+                lefts = values("12", "3.5", "-7", "84", "2", "17", "9");
+                rights = values("30", "1.25", "6", "4", "10", "5", "");
+                break;
+            case "estimation":
+                operators = new Operator[] {Operator.ROUND, Operator.CEIL, Operator.FLOOR, Operator.TRUNC};
+                lefts = values("2.5", "-1.2", "7.9", "-3.7");
+                rights = values("", "", "", "");
+                break;
+            case "trig":
+                operators = new Operator[] {Operator.SIN, Operator.COS, Operator.TAN, Operator.CSC, Operator.SEC, Operator.COT};
+                lefts = values("0.5", "1", "0.25", "2", "3", "0.75");
+                rights = values("", "", "", "", "", "");
+                break;
+            case "bitwise":
+                operators = new Operator[] {Operator.BNOT, Operator.BAND, Operator.BOR, Operator.BXOR, Operator.BLSHIFT, Operator.BRSHIFT, Operator.BRSHIFTPLUS};
+                lefts = values("5", "12", "12", "12", "3", "-64", "-64");
+                rights = values("", "10", "10", "10", "4", "2", "2");
+                break;
+            case "boolean":
+                operators = new Operator[] {Operator.NOT, Operator.AND, Operator.OR};
+                lefts = values("TRUE", "TRUE", "FALSE");
+                rights = values("", "FALSE", "TRUE");
+                break;
+            case "concatenation":
+                operators = new Operator[] {Operator.CONCAT, Operator.REPEAT};
+                lefts = values("Time", "ab");
+                rights = values("line", "8");
+                break;
+            case "equality":
+                operators = new Operator[] {Operator.EQUALS, Operator.NOTEQUALS, Operator.LESSTHAN, Operator.LESSTHANEQUALS, Operator.GREATERTHAN, Operator.GREATERTHANEQUALS};
+                lefts = values("42", "abc", "3", "2.5", "9", "x");
+                rights = values("42", "abd", "4", "2.5", "10", "y");
+                break;
+            default:
+                throw new IllegalArgumentException(family);
+        }
+    }
+
+    private static Value[] values(String... texts) {
+        Value[] values = new Value[texts.length];
+        for (int i = 0; i < texts.length; i++) {
+            values[i] = Value.of(texts[i]);
+        }
+        return values;
+    }
+
+    @Benchmark
+    public Value evaluate() {
+        int i = next;
+        next = (i + 1 == operators.length) ? 0 : i + 1;
+        accumulator.left = lefts[i];
+        accumulator.operator = operators[i];
+        accumulator.right = rights[i];
+        accumulator.isAmorphous = false;
+        accumulator.evaluate();
+        return accumulator.left;
+    }
+}
@@ -0,0 +1,87 @@
+package bench;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import src.Machine;
+import src.OutputSink;
+import src.Program;
+import src.StdinInput;
+import src.TimelineEngine;
+
+/**
+ * Whole programs, one cell at a time: every example plus two large
+ * synthetic grids. The machine restarts whenever the program ends, so
+ * programs that never end are measured too. The "steps" counter is steps
+ * per second.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProgramBenchmark {
+
+    private static final int STEPS_PER_CALL = 1 << 16;
+    private static final OutputSink DISCARD = text -> {};
+
+    @Param({
+        "bad_printing", "cat", "circle_effect", "dropoff", "dropoff_rigorous", "fibonacci_copy",
+        "hello", "hi", "horizontal_looping", "infinity_cell_loop", "math_operators",
+        "truth_machine", "vertical_looping", "synthetic-wide", "synthetic-snake"
+    })
+    public String program;
+
+    private Program decoded;
+    private String input;
+    private Machine machine;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counters {
+        public long steps;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            steps = 0;
+        }
+    }
+
+    @Setup
+    public void setup() {
+        decoded = TimelineEngine.compile(Programs.source(program));
+        input = Programs.input(program);
+        machine = restart();
+    }
+
+    private Machine restart() {
+        return new Machine(decoded, StdinInput.of(input), DISCARD);
+    }
+
+    @Benchmark
+    public long step(Counters counters) {
+        long before = machine.steps;
+        long done = 0;
+        for (int i = 0; i < STEPS_PER_CALL; i++) {
+            if (!machine.step()) {
+                done += machine.steps - before;
+                machine = restart();
+                before = 0;
+            }
+        }
+        done += machine.steps - before;
+        counters.steps += done;
+        return done;
+    }
+}
@@ -0,0 +1,60 @@
+package bench;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+final class Programs {
+    // Benchmarks run from bench/, so the examples are one directory up
+    // unless -Dtimeline.examples says otherwise.
+    private static final Path EXAMPLES = Path.of(System.getProperty("timeline.examples", "../examples"));
+
+    private Programs() {}
+
+    static String source(String name) {
+        switch (name) {
+            case "synthetic-wide":
+                return wide(1 << 16);
+            case "synthetic-snake":
+                return snake(512, 512);
+            default:
+                try {
+                    return Files.readString(EXAMPLES.resolve(name + ".timeline"));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+        }
+    }
+
+    // Input that makes every example finish: truth_machine only stops on 0.
+    static String input(String name) {
+        return name.equals("truth_machine") ? "0" : "Timeline";
+    }
+
+    private static final String UNIT = "DMD?@";
+
+    static String wide(int cols) {
+        // One row of arithmetic and layer changes that ends at X.
+        return UNIT.repeat(cols / UNIT.length()) + "X\n";
+    }
+
+    static String snake(int rows, int cols) {
+        // Winds through every row, right on even rows and left on odd rows,
+        // and stops at the bottom left corner. Odd rows hold the pattern
+        // backwards so the data pointer always reads it forwards.
+        int repeats = (cols - 2) / UNIT.length();
+        String body = UNIT.repeat(repeats);
+        String reversed = new StringBuilder(body).reverse().toString();
+        String pad = " ".repeat(cols - 2 - body.length());
+        StringBuilder grid = new StringBuilder();
+        for (int r = 0; r < rows; r++) {
+            if (r % 2 == 0) {
+                grid.append(r == 0 ? ' ' : '<').append(body).append(pad).append('>');
+            } else {
+                grid.append(r == rows - 1 ? 'X' : '<').append(pad).append(reversed).append('>');
+            }
+            grid.append('\n');
+        }
+        return grid.toString();
+    }
+}
@@ -0,0 +1,91 @@
+package bench;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import src.Accumulator;
+import src.Operator;
+import src.Value;
+
+/**
+ * Pushes items the way infinity cells do, each followed by the evaluation
+ * the machine runs after every push.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PushBenchmark {
+
+    private static final String[] TEXTS = {"7", "x", "42", "TRUE", "3.25", "-19", "Timeline", "\0"};
+    private static final Value[] VALUES = new Value[TEXTS.length];
+
+    static {
+        for (int i = 0; i < TEXTS.length; i++) {
+            VALUES[i] = Value.of(TEXTS[i]);
+        }
+    }
+
+    private final Accumulator accumulator = new Accumulator();
+    private int next;
+
+    private int advance() {
+        int i = next;
+        next = (i + 1 == TEXTS.length) ? 0 : i + 1;
+        return i;
+    }
+
+    private void evaluate() {
+        if (accumulator.isAmorphous || !accumulator.evaluate()) {
+            accumulator.amorphousClear();
+        }
+    }
+
+    @Benchmark
+    public Value pushString() {
+        // Classifying the text is part of the cost, as it is for Stdin Input.
+        accumulator.clear();
+        accumulator.push(Value.of(TEXTS[advance()]));
+        evaluate();
+        return accumulator.left;
+    }
+
+    @Benchmark
+    public Value pushValue() {
+        accumulator.clear();
+        accumulator.push(VALUES[advance()]);
+        evaluate();
+        return accumulator.left;
+    }
+
+    @Benchmark
+    public Value pushOperator() {
+        accumulator.clear();
+        accumulator.push(VALUES[0]);
+        evaluate();
+        accumulator.push(Operator.ADD);
+        evaluate();
+        return accumulator.left;
+    }
+
+    @Benchmark
+    public Value pushBinary() {
+        // left, operator, right: the shape of most Timeline arithmetic.
+        accumulator.clear();
+        accumulator.push(VALUES[0]);
+        evaluate();
+        accumulator.push(Operator.ADD);
+        evaluate();
+        accumulator.push(VALUES[2]);
+        evaluate();
+        return accumulator.left;
+    }
+}
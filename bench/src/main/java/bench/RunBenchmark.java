@@ -0,0 +1,62 @@
+package bench;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import src.OutputSink;
+import src.Program;
+import src.RunResult;
+import src.TimelineEngine;
+
+/**
+ * Whole runs through TimelineEngine, exactly like the command line, with
+ * traces and a sink that drops the output. Only programs that end can be
+ * run this way, so fibonacci_copy is left to ProgramBenchmark. The
+ * "steps" counter is steps per second.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RunBenchmark {
+
+    private static final OutputSink DISCARD = text -> {};
+
+    @Param({
+        "bad_printing", "cat", "circle_effect", "dropoff", "dropoff_rigorous",
+        "hello", "hi", "horizontal_looping", "infinity_cell_loop", "math_operators",
+        "truth_machine", "vertical_looping", "synthetic-wide", "synthetic-snake"
+    })
+    public String program;
+
+    @Param({"false", "true"})
+    public boolean toBytecode;
+
+    private TimelineEngine engine;
+    private Program decoded;
+    private String input;
+
+    @Setup
+    public void setup() {
+        engine = new TimelineEngine(false, toBytecode);
+        decoded = TimelineEngine.compile(Programs.source(program));
+        input = Programs.input(program);
+    }
+
+    @Benchmark
+    public RunResult run(ProgramBenchmark.Counters counters) {
+        RunResult result = engine.run(decoded, input, DISCARD);
+        counters.steps += result.steps;
+        return result;
+    }
+}
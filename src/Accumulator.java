@@ -1,15 +1,21 @@
 package src;
-import java.util.regex.Pattern;
 
 public class Accumulator {
-    public String left;
+    public Value left;
     public Operator operator;
-    public String right;
+    public Value right;
     public boolean isAmorphous;
+    // The longest value CONCAT and REPEAT may build, and whether one of
+    // them was refused for going over it.
+    public long sizeLimit = Long.MAX_VALUE;
+    public boolean overBudget;
+    // Whether integers are computed exactly, past the range of an int,
+    // rather than wrapping around like Java ints.
+    public boolean exact;
 
     public Accumulator() {
-        left = "";
-        right = "";
+        left = Value.EMPTY;
+        right = Value.EMPTY;
         operator = Operator.NULL;
         isAmorphous = false;
     }
@@ -19,9 +25,25 @@ public class Accumulator {
         right = acc.right; 
         operator = acc.operator;
         isAmorphous = acc.isAmorphous;
+        sizeLimit = acc.sizeLimit;
+        overBudget = acc.overBudget;
+        exact = acc.exact;
     }
 
-    public void push(String value) {
+    public boolean sameState(Accumulator acc) {
+        /**
+         * Checks if the other accumulator holds exactly the same items.
+         * 
+         * @param acc       The accumulator to compare with.
+         * @return          Whether or not both accumulators are the same.
+         */
+        return isAmorphous == acc.isAmorphous
+            && operator == acc.operator
+            && left.equals(acc.left)
+            && right.equals(acc.right);
+    }
+
+    public void push(Value value) {
         /**
          * Adds the new value to the accumulator
          * 
@@ -40,19 +62,28 @@ public class Accumulator {
          * @param operator      The operator to add to the accumulator.
          */
         if (this.operator == Operator.NULL) {this.operator = operator;}
-        else {isAmorphous = true;}
+        else {
+            if (!isAmorphous && TimelineEvents.isAmorphousEnabled()) {
+                TimelineEvents.amorphous("second operator " + operator.name(), left, this.operator, right);
+            }
+            isAmorphous = true;
+        }
     }
     
     private int pow(int a, int b) {
         /**
-         * Returns the exponent of a ** b.
+         * Returns the exponent of a ** b, wrapping around like repeated int
+         * multiplication does. Squaring gives the same result in at most 31
+         * steps, however high the power.
          * 
          * @param a         the base
          * @param b         the power
          * @return          the exponent result
          */
         int exp = 1;
-        for (int i = 0; i < b; i++) {exp *= a;}
+        for (; b > 0; b >>= 1, a *= a) {
+            if ((b & 1) != 0) {exp *= a;}
+        }
         return exp;
     }
 
@@ -61,7 +92,7 @@ public class Accumulator {
          * Returns the modulo of a mod b.
          * 
          * @param a         the dividend
-         * @param b         the divisor
+         * @param b         the divisor, which is never 0
          * @return          the modulo result
          */
         if (Integer.signum(a) == Integer.signum(b)) {
@@ -83,306 +114,337 @@ public class Accumulator {
         return ((n < 0) ? -1 : 1) * (int)(Math.floor(Math.abs(n)));
     }
 
-    private boolean canParseInt(String str) {
-        /**
-         * Checks if the string can be parse to a integer.
-         * 
-         * @param           The string that is being evaluated.
-         * @return          Whether or not the string can be parsed.
-         */
-        return Pattern.matches("^-?[\\d]+$", str);
-    }
-
-    private boolean canParseFloat(String str) {
-        /**
-         * Checks if the string can be parse to a float.
-         * 
-         * @param           The string that is being evaluated.
-         * @return          Whether or not the string can be parsed.
-         */
-        return Pattern.matches("^-?[\\d]+(.[\\d]+)?$", str);
-    }
-
     public boolean evaluate() {
         /**
          * Evaluates the accumulator from the given values
          * and operators. This will change the accumulator and remove the
          * operator to null.
          * 
+         * Whether an evaluation is valid is decided from the types of the
+         * values before anything is computed, so nothing on the way throws,
+         * and an evaluation that turns AMORPHOUS costs no more than one
+         * that does not.
+         *
          * @return              the boolean if the evaluation does not lead to an Amorphous
-         *                          [0] <= Checks if evaluation has been changed.
-         *                          [1] <= Checks if the current evaluation state is valid.
          */
         // System.out.println("|" + left + "| " +  operator + " |" + right + "| " + isAmorphous);
-        boolean isValid = true;
-        try {
-            if (!right.isEmpty()) {
-                isValid = evaluateBinary();
-            } else if (!left.isEmpty()) {
-                isValid = evaluateUnary();
-            } else {
-                isValid = operator == Operator.NULL; 
-                operator = Operator.NULL;
-            }
-        } catch (Exception e) {
-            // System.out.println("EXCEPTION CAUGHT");
-            isValid = false;
+        boolean isValid;
+        Value evaluatedLeft = left;
+        Operator evaluatedOperator = operator;
+        Value evaluatedRight = right;
+        if (!right.isEmpty()) {
+            isValid = evaluateBinary();
+        } else if (!left.isEmpty()) {
+            isValid = evaluateUnary();
+        } else {
+            isValid = operator == Operator.NULL; 
+            operator = Operator.NULL;
         }
         if (!isValid) {
+            if (TimelineEvents.isAmorphousEnabled()) {
+                TimelineEvents.amorphous("evaluation", evaluatedLeft, evaluatedOperator, evaluatedRight);
+            }
             amorphousClear();
             isAmorphous = true;
         }
         return isValid;
     }
 
+    private boolean isIntPair() {
+        /**
+         * Checks if both values are integers that fit in an int.
+         * 
+         * @return          Whether or not both values are ints.
+         */
+        return left.isInt() && right.isInt();
+    }
+
+    private boolean isNumberPair() {
+        /**
+         * Checks if both values can be evaluated as floats. Two values that
+         * both read as integers never fall back to floats, even if one is
+         * too wide for an int.
+         * 
+         * @return          Whether or not both values are floats.
+         */
+        return left.isNumber() && right.isNumber() && !(left.isIntegral() && right.isIntegral());
+    }
+
     private boolean evaluateBinary() {
+        if (exact && left.isIntegral() && right.isIntegral() && ExactMath.covers(operator)) {
+            return evaluateExact(ExactMath.binary(left, operator, right));
+        }
         boolean isValid = true;
         switch (operator) {
             case ADD:
-                if (canParseInt(left) && canParseInt(right))
-                    left = Integer.toString(Integer.parseInt(left) + Integer.parseInt(right));
-                else if (canParseFloat(left) && canParseFloat(right))
-                    left = Double.toString(Double.parseDouble(left) + Double.parseDouble(right));
+                if (isIntPair())
+                    left = Value.of(left.intValue + right.intValue);
+                else if (isNumberPair())
+                    left = Value.of(left.doubleValue + right.doubleValue);
                 else
                     isValid = false;
                 break;
             case SUB:
-                if (canParseInt(left) && canParseInt(right))
-                    left = Integer.toString(Integer.parseInt(left) - Integer.parseInt(right));
-                else if (canParseFloat(left) && canParseFloat(right))
-                    left = Double.toString(Double.parseDouble(left) - Double.parseDouble(right));
+                if (isIntPair())
+                    left = Value.of(left.intValue - right.intValue);
+                else if (isNumberPair())
+                    left = Value.of(left.doubleValue - right.doubleValue);
                 else
                     isValid = false;
                 break;
             case MULT:
-                if (canParseInt(left) && canParseInt(right))
-                    left = Integer.toString(Integer.parseInt(left) * Integer.parseInt(right));
-                else if (canParseFloat(left) && canParseFloat(right))
-                    left = Double.toString(Double.parseDouble(left) * Double.parseDouble(right));
+                if (isIntPair())
+                    left = Value.of(left.intValue * right.intValue);
+                else if (isNumberPair())
+                    left = Value.of(left.doubleValue * right.doubleValue);
                 else
                     isValid = false;
                 break;
             case DIV:
-                if (canParseInt(left) && canParseFloat(right))
-                    left = Integer.toString(Integer.parseInt(left) / Integer.parseInt(right));
-                else if (canParseFloat(left) && canParseFloat(right))
-                    left = Double.toString(Double.parseDouble(left) / Double.parseDouble(right));
+                // An integer on the left always divides as an integer, so a float on the right is rejected.
+                if (left.isIntegral() && right.isNumber()) {
+                    if (isIntPair() && right.intValue != 0)
+                        left = Value.of(left.intValue / right.intValue);
+                    else
+                        isValid = false;
+                } else if (left.isNumber() && right.isNumber())
+                    left = Value.of(left.doubleValue / right.doubleValue);
                 else
                     isValid = false;
                 break;
             case POW:
-                if (canParseInt(left) && canParseInt(right))
-                    left = Integer.toString(pow(Integer.parseInt(left), Integer.parseInt(right)));
-                else if (canParseFloat(left) && canParseFloat(right))
-                    left = Double.toString(Math.pow(Double.parseDouble(left), Double.parseDouble(right)));
+                if (isIntPair())
+                    left = Value.of(pow(left.intValue, right.intValue));
+                else if (isNumberPair())
+                    left = Value.of(Math.pow(left.doubleValue, right.doubleValue));
                 else
                     isValid = false;
                 break;
             case MOD:
-                if (canParseInt(left) && canParseInt(right))
-                    left = Integer.toString(mod(Integer.parseInt(left), Integer.parseInt(right)));
+                if (isIntPair() && right.intValue != 0)
+                    left = Value.of(mod(left.intValue, right.intValue));
                 else
                     isValid = false;
                 break;
             case BAND:
-                if (canParseInt(left) && canParseInt(right))
-                    left = Integer.toString(Integer.parseInt(left) & Integer.parseInt(right));
+                if (isIntPair())
+                    left = Value.of(left.intValue & right.intValue);
                 else
                     isValid = false;
                 break;
             case BOR:
-                if (canParseInt(left) && canParseInt(right))
-                    left = Integer.toString(Integer.parseInt(left) | Integer.parseInt(right));
+                if (isIntPair())
+                    left = Value.of(left.intValue | right.intValue);
                 else
                     isValid = false;
                 break;
             case BXOR:
-                if (canParseInt(left) && canParseInt(right))
-                    left = Integer.toString(Integer.parseInt(left) ^ Integer.parseInt(right));
+                if (isIntPair())
+                    left = Value.of(left.intValue ^ right.intValue);
                 else
                     isValid = false;
                 break;
             case BLSHIFT:
-                if (canParseInt(left) && canParseInt(right))
-                    left = Integer.toString(Integer.parseInt(left) << Integer.parseInt(right));
+                if (isIntPair())
+                    left = Value.of(left.intValue << right.intValue);
                 else
                     isValid = false;
                 break;
             case BRSHIFT:
-                if (canParseInt(left) && canParseInt(right))
-                    left = Integer.toString(Integer.parseInt(left) >> Integer.parseInt(right));
+                if (isIntPair())
+                    left = Value.of(left.intValue >> right.intValue);
                 else
                     isValid = false;
                 break;
             case BRSHIFTPLUS:
-                if (canParseInt(left) && canParseInt(right))
-                    left = Integer.toString(Integer.parseInt(left) >>> Integer.parseInt(right));
+                if (isIntPair())
+                    left = Value.of(left.intValue >>> right.intValue);
                 else
                     isValid = false;
                 break;
             case AND:
-                if (!left.equals("FALSE") && !right.equals("FALSE")){
-                    left = "TRUE";
-                } else {
-                    left = "FALSE";
-                }
+                left = Value.of(!left.isFalse() && !right.isFalse());
                 break;
             case OR:
-                if (left.equals("FALSE") && right.equals("FALSE")){
-                    left = "FALSE";
-                } else {
-                    left = "TRUE";
-                }
+                left = Value.of(!left.isFalse() || !right.isFalse());
                 break;
             case CONCAT:
-                left += right;
+                // Long strings are joined as ropes, and only copied out when printed or compared.
+                isValid = keep(Value.concat(left, right));
                 break;
             case REPEAT:
-                if (canParseInt(right)){
-                    String temp = "";
-                    for (int i = 0; i < Integer.parseInt(right); i++) {
-                        temp += left;
-                    }
-                    left = temp;
-                } else {
+                if (right.isInt())
+                    isValid = keep(Value.repeat(left, right.intValue));
+                else
                     isValid = false;
-                }
                 break;
             case EQUALS:
-                left = (left.equals(right)) ? "TRUE" : "FALSE";
+                left = Value.of(left.text().equals(right.text()));
                 break;
             case NOTEQUALS:
-                left = (!left.equals(right)) ? "TRUE" : "FALSE";
+                left = Value.of(!left.text().equals(right.text()));
                 break;
             case LESSTHAN:
-                left = (left.compareTo(right) < 0) ? "TRUE" : "FALSE";
+                left = Value.of(left.text().compareTo(right.text()) < 0);
                 break;
             case LESSTHANEQUALS:
-                left = (left.compareTo(right) <= 0) ? "TRUE" : "FALSE";
+                left = Value.of(left.text().compareTo(right.text()) <= 0);
                 break;
             case GREATERTHAN:
-                left = (left.compareTo(right) > 0) ? "TRUE" : "FALSE";
+                left = Value.of(left.text().compareTo(right.text()) > 0);
                 break;
             case GREATERTHANEQUALS:
-                left = (left.compareTo(right) >= 0) ? "TRUE" : "FALSE";
+                left = Value.of(left.text().compareTo(right.text()) >= 0);
                 break;
             default:
                 isValid = false;
                 break;
         }
-        right = "";
+        right = Value.EMPTY;
         operator = Operator.NULL;
         return isValid;
     }
 
+    private boolean evaluateExact(Value result) {
+        /**
+         * Keeps the result of exact arithmetic in the left-value. Integers
+         * wider than a long count toward the size limit by their digits.
+         *
+         * @param result        the result, or null if there is none
+         * @return              whether or not there was a result to keep
+         */
+        right = Value.EMPTY;
+        operator = Operator.NULL;
+        return result != null && keep(result);
+    }
+
+    private boolean keep(Value result) {
+        /**
+         * Keeps what CONCAT or REPEAT built in the left-value, unless it is
+         * too long to keep. Going over the size limit only marks the budget
+         * as spent when there is a limit, since a value too long for a String
+         * is AMORPHOUS either way.
+         *
+         * @param result        the built value, or null if it is too long for a String
+         * @return              whether or not the value was kept
+         */
+        if (result != null && result.size() <= sizeLimit) {
+            left = result;
+            return true;
+        }
+        overBudget = sizeLimit != Long.MAX_VALUE;
+        return false;
+    }
+
+    public long size() {return (long)left.size() + right.size();}
+
     private boolean evaluateUnary() {
+        if (exact && left.isNumber() && ExactMath.isUnary(operator) && (left.isIntegral() || ExactMath.rounds(operator))) {
+            return evaluateExact(ExactMath.unary(operator, left));
+        }
         switch (operator) {
             case NULL:
                 return true;
             case NEG:
-                if (canParseInt(left)) {
-                    left = Integer.toString(-Integer.parseInt(left));
-                } else if (canParseFloat(left)) {
-                    left = Double.toString(-Double.parseDouble(left));
+                if (left.isInt()) {
+                    left = Value.of(-left.intValue);
+                } else if (left.isNumber() && !left.isIntegral()) {
+                    left = Value.of(-left.doubleValue);
                 } else {
                     return false;
                 }
                 operator = Operator.NULL;
                 return true;
             case ROUND:
-                if (canParseFloat(left)) {
-                    left = Integer.toString((int)Math.round(Double.parseDouble(left)));
+                if (left.isNumber()) {
+                    left = Value.of((int)Math.round(left.doubleValue));
                 } else {
                     return false;
                 }
                 operator = Operator.NULL;
                 return true;
             case CEIL:
-                if (canParseFloat(left)) {
-                    left = Integer.toString((int)Math.ceil(Double.parseDouble(left)));
+                if (left.isNumber()) {
+                    left = Value.of((int)Math.ceil(left.doubleValue));
                 } else {
                     return false;
                 }
                 operator = Operator.NULL;
                 return true;
             case FLOOR:
-                if (canParseFloat(left)) {
-                    left = Integer.toString((int)Math.floor(Double.parseDouble(left)));
+                if (left.isNumber()) {
+                    left = Value.of((int)Math.floor(left.doubleValue));
                 } else {
                     return false;
                 }
                 operator = Operator.NULL;
                 return true;
             case TRUNC:
-                if (canParseFloat(left)) {
-                    left = Integer.toString((int)truncate(Double.parseDouble(left)));
+                if (left.isNumber()) {
+                    left = Value.of(truncate(left.doubleValue));
                 } else {
                     return false;
                 }
                 operator = Operator.NULL;
                 return true;
             case SIN:
-                if (canParseFloat(left)) {
-                    left = Double.toString(Math.sin(Double.parseDouble(left)));
+                if (left.isNumber()) {
+                    left = Value.of(Math.sin(left.doubleValue));
                 } else {
                     return false;
                 }
                 operator = Operator.NULL;
                 return true;
             case COS:
-                if (canParseFloat(left)) {
-                    left = Double.toString(Math.cos(Double.parseDouble(left)));
+                if (left.isNumber()) {
+                    left = Value.of(Math.cos(left.doubleValue));
                 } else {
                     return false;
                 }
                 operator = Operator.NULL;
                 return true;
             case TAN:
-                if (canParseFloat(left)) {
-                    left = Double.toString(Math.tan(Double.parseDouble(left)));
+                if (left.isNumber()) {
+                    left = Value.of(Math.tan(left.doubleValue));
                 } else {
                     return false;
                 }
                 operator = Operator.NULL;
                 return true;
             case CSC:
-                if (canParseFloat(left)) {
-                    left = Double.toString(1 / Math.sin(Double.parseDouble(left)));
+                if (left.isNumber()) {
+                    left = Value.of(1 / Math.sin(left.doubleValue));
                 } else {
                     return false;
                 }
                 operator = Operator.NULL;
                 return true;
             case SEC:
-                if (canParseFloat(left)) {
-                    left = Double.toString(1 / Math.cos(Double.parseDouble(left)));
+                if (left.isNumber()) {
+                    left = Value.of(1 / Math.cos(left.doubleValue));
                 } else {
                     return false;
                 }
                 operator = Operator.NULL;
                 return true;
             case COT:
-                if (canParseFloat(left)) {
-                    left = Double.toString(1 / Math.tan(Double.parseDouble(left)));
+                if (left.isNumber()) {
+                    left = Value.of(1 / Math.tan(left.doubleValue));
                 } else {
                     return false;
                 }
                 operator = Operator.NULL;
                 return true;
             case BNOT:
-                if (canParseInt(left)) {
-                    left = Integer.toString(~ Integer.parseInt(left));
+                if (left.isInt()) {
+                    left = Value.of(~ left.intValue);
                 } else {
                     return false;
                 }
                 operator = Operator.NULL;
                 return true;
             case NOT:
-                if (left.equals( "FALSE")) {
-                    left = "TRUE";
-                } else {
-                    left = "FALSE";
-                }
+                left = Value.of(left.isFalse());
                 operator = Operator.NULL;
                 break;
             default:
@@ -408,32 +470,60 @@ public class Accumulator {
         // System.out.println("is not empty: " + !left.isEmpty());
         // System.out.println("left is not \"FALSE\": " + !left.equals("FALSE"));
         // System.out.println("left is not '\\0': " + !left.equals("FALSE"));
-        return !isAmorphous && operator == Operator.NULL && !left.isEmpty() && !left.equals("FALSE") && !left.equals("\0");
+        return !isAmorphous && operator == Operator.NULL && !left.isEmpty() && !left.isFalse() && !left.isNullCharacter();
     }
 
-    public void print() {
+    public String printout() {
         /**
-         * Prints the item in the accumulator, if it can. If
-         * the accumulator is amorphous, the it prints AMORPHOUS.
+         * Returns what printing the accumulator shows. If
+         * the accumulator is amorphous, the it shows AMORPHOUS.
          * Otherwise, if the accumulator contains an operator, then
-         * print UNEVALUATEED. Otherwise, print the item in the
+         * it shows UNEVALUATEED. Otherwise, it shows the item in the
          * left variable.
          */
         if (isAmorphous) {
-            System.out.print("AMORPHOUS");
+            return "AMORPHOUS";
         } else if (operator != Operator.NULL) {
-            System.out.print("UNEVALUATED");
+            return "UNEVALUATED";
         } else {
-            System.out.print(left);
+            return left.text();
         }
     }
 
+    public void print(OutputSink output) {
+        /**
+         * Prints the item in the accumulator, if it can.
+         * 
+         * @param output    where to print to
+         */
+        output.print(printout());
+    }
+
+    public boolean isEmpty() {
+        /**
+         * Checks if the accumulator is cleared.
+         */
+        return left.isEmpty() && right.isEmpty() && operator == Operator.NULL && !isAmorphous;
+    }
+
+    public void set(Accumulator acc) {
+        /**
+         * Copies the items of another accumulator into this one, along with
+         * whether it went over the size limit on the way.
+         */
+        left = acc.left;
+        right = acc.right;
+        operator = acc.operator;
+        isAmorphous = acc.isAmorphous;
+        overBudget |= acc.overBudget;
+    }
+
     public void clear() {
         /**
          * Clears the accumulator.
          */
-        left = "";
-        right = "";
+        left = Value.EMPTY;
+        right = Value.EMPTY;
         operator = Operator.NULL;
         isAmorphous = false;
     } 
@@ -443,8 +533,8 @@ public class Accumulator {
          * Clears the accumulator, but makes
          * isAmorphous true
          */
-        left = "";
-        right = "";
+        left = Value.EMPTY;
+        right = Value.EMPTY;
         operator = Operator.NULL;
     }
 }
\ No newline at end of file
@@ -0,0 +1,34 @@
+package src;
+public class Budget {
+    // How many steps a run with a deadline or a size limit takes between
+    // looks at the clock and at everything it holds.
+    public static final long INTERVAL = 1 << 16;
+
+    public static final Budget UNLIMITED = new Budget(Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE);
+
+    public final long maxSteps;
+    public final long maxNanos;
+    // The most characters the accumulator and the drops may hold between them.
+    public final long maxSize;
+
+    public Budget(long maxSteps, long maxNanos, long maxSize) {
+        if (maxSteps < 0 || maxNanos < 0 || maxSize < 0) {
+            throw new RuntimeException("A budget can't be negative!");
+        }
+        this.maxSteps = maxSteps;
+        this.maxNanos = maxNanos;
+        this.maxSize = maxSize;
+    }
+
+    public Budget withSteps(long maxSteps) {return new Budget(maxSteps, maxNanos, maxSize);}
+    public Budget withNanos(long maxNanos) {return new Budget(maxSteps, maxNanos, maxSize);}
+    public Budget withSize(long maxSize) {return new Budget(maxSteps, maxNanos, maxSize);}
+
+    public boolean isTimed() {
+        /**
+         * Checks if a run has to look at the clock or at what it holds every
+         * now and then, rather than only stop at its step limit.
+         */
+        return maxNanos != Long.MAX_VALUE || maxSize != Long.MAX_VALUE;
+    }
+}
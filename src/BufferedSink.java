@@ -0,0 +1,129 @@
+package src;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+
+public class BufferedSink implements OutputSink {
+    // Programs print a character or two at a time, so output is collected
+    // here and written out in blocks this big, or when the run ends.
+    public static final int THRESHOLD = 1 << 13;
+    // How long a live sink holds on to output before poll() writes it out.
+    public static final long DELAY = 100_000_000L;
+
+    private final OutputStream out;
+    private final Charset charset;
+    private final int threshold;
+    private final StringBuilder buffer;
+    // How long output may wait, or -1 if it waits for the run to end, and
+    // when the oldest output that is still waiting was printed.
+    private final long delay;
+    private long since;
+    // Set by flushWithin() until the run has written out the buffer.
+    private volatile boolean waiting;
+
+    public BufferedSink(OutputStream out, Charset charset) {
+        this(out, charset, THRESHOLD);
+    }
+
+    public BufferedSink(OutputStream out, Charset charset, int threshold) {
+        this(out, charset, threshold, -1);
+    }
+
+    public BufferedSink(OutputStream out, Charset charset, int threshold, long delay) {
+        this.out = out;
+        this.charset = charset;
+        this.threshold = threshold;
+        this.delay = delay;
+        buffer = new StringBuilder(threshold + 64);
+    }
+
+    public void print(String text) {
+        if (buffer.length() == 0 && delay >= 0) {
+            since = System.nanoTime();
+        }
+        buffer.append(text);
+        if (buffer.length() >= threshold) {
+            write(false);
+        }
+    }
+
+    public boolean isLive() {return delay >= 0;}
+
+    public void poll() {
+        if (waiting) {
+            synchronized (this) {
+                flush();
+                waiting = false;
+                notifyAll();
+            }
+        } else if (buffer.length() > 0 && delay >= 0 && System.nanoTime() - since >= delay) {
+            flush();
+        }
+    }
+
+    public synchronized void flushWithin(long patience) {
+        /**
+         * Has the run write out the buffer at its next poll(), so the buffer
+         * is never touched by two threads at once, and waits for that. A run
+         * that doesn't get there in time, like one waiting for input, isn't
+         * printing either, so the buffer is written out from here.
+         *
+         * @param patience      how long to wait for the run, in nanoseconds
+         */
+        waiting = true;
+        long end = System.nanoTime() + patience;
+        long left;
+        while (waiting && (left = end - System.nanoTime()) > 0) {
+            try {
+                wait(left / 1_000_000, (int) (left % 1_000_000));
+            } catch (InterruptedException e) {
+                break;
+            }
+        }
+        if (waiting) {
+            waiting = false;
+            flush();
+        }
+    }
+
+    public synchronized void flush() {
+        write(true);
+        try {
+            out.flush();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void write(boolean everything) {
+        /**
+         * Writes out the buffer. Unless everything has to go, half of a
+         * surrogate pair at the end waits for its other half, so it is
+         * encoded as one character.
+         *
+         * @param everything    whether or not to write out the whole buffer
+         */
+        int end = buffer.length();
+        if (!everything && end > 0 && Character.isHighSurrogate(buffer.charAt(end - 1))) {
+            end--;
+        }
+        if (end == 0) {
+            return;
+        }
+        TimelineEvents.OutputFlush event = TimelineEvents.recording() ? new TimelineEvents.OutputFlush() : null;
+        if (event != null) {
+            event.begin();
+        }
+        byte[] bytes = buffer.substring(0, end).getBytes(charset);
+        try {
+            out.write(bytes);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        buffer.delete(0, end);
+        if (event != null) {
+            event.bytes = bytes.length;
+            event.commit();
+        }
+    }
+}
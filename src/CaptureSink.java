@@ -0,0 +1,14 @@
+package src;
+public class CaptureSink implements OutputSink {
+    // Keeps everything a run prints in memory, for tests and for callers
+    // that want the output as a String.
+    private final StringBuilder buffer = new StringBuilder();
+
+    public void print(String text) {buffer.append(text);}
+
+    public String text() {return buffer.toString();}
+    public int length() {return buffer.length();}
+
+    @Override
+    public String toString() {return text();}
+}
@@ -0,0 +1,89 @@
+package src;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+public class ChannelSink implements OutputSink {
+    // Output is collected as characters, encoded straight into a direct
+    // buffer, and handed to the channel a block at a time.
+    public static final int CAPACITY = 1 << 13;
+
+    private final WritableByteChannel channel;
+    private final CharsetEncoder encoder;
+    private final CharBuffer chars;
+    private final ByteBuffer bytes;
+
+    public ChannelSink(WritableByteChannel channel, Charset charset) {
+        this(channel, charset, CAPACITY);
+    }
+
+    public ChannelSink(WritableByteChannel channel, Charset charset, int capacity) {
+        this.channel = channel;
+        encoder = charset.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        chars = CharBuffer.allocate(Math.max(capacity, 2));
+        bytes = ByteBuffer.allocateDirect((int)Math.ceil(chars.capacity() * encoder.maxBytesPerChar()));
+    }
+
+    public void print(String text) {
+        for (int i = 0; i < text.length(); ) {
+            int n = Math.min(chars.remaining(), text.length() - i);
+            chars.append(text, i, i + n);
+            i += n;
+            if (!chars.hasRemaining()) {
+                drain(false);
+            }
+        }
+    }
+
+    public void flush() {drain(true);}
+
+    private void drain(boolean everything) {
+        /**
+         * Encodes what is collected and writes it to the channel. Unless
+         * everything has to go, half of a surrogate pair at the end stays
+         * behind for its other half.
+         *
+         * @param everything    whether or not to write out every character
+         */
+        chars.flip();
+        CoderResult result;
+        do {
+            result = encoder.encode(chars, bytes, everything);
+            if (everything && result.isUnderflow()) {
+                result = encoder.flush(bytes);
+            }
+            write();
+        } while (result.isOverflow());
+        chars.compact();
+        if (everything) {
+            encoder.reset();
+        }
+    }
+
+    private void write() {
+        bytes.flip();
+        TimelineEvents.OutputFlush event = TimelineEvents.recording() ? new TimelineEvents.OutputFlush() : null;
+        if (event != null) {
+            event.begin();
+            event.bytes = bytes.remaining();
+        }
+        try {
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        bytes.clear();
+        if (event != null) {
+            event.commit();
+        }
+    }
+}
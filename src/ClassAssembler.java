@@ -0,0 +1,353 @@
+package src;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+public class ClassAssembler {
+    // Class files up to Java 6 are checked by type inference, so the
+    // assembler never has to work out stack map frames.
+    private static final int VERSION = 49;
+    private static final int ACC_PUBLIC = 0x0001;
+    private static final int ACC_PRIVATE = 0x0002;
+    private static final int ACC_STATIC = 0x0008;
+    private static final int ACC_FINAL = 0x0010;
+    private static final int ACC_SUPER = 0x0020;
+
+    // Opcodes of the instructions the compiler needs.
+    public static final int ICONST_0 = 0x03;
+    public static final int LCONST_0 = 0x09;
+    public static final int LCONST_1 = 0x0a;
+    public static final int BIPUSH = 0x10;
+    public static final int SIPUSH = 0x11;
+    public static final int LDC = 0x12;
+    public static final int LDC_W = 0x13;
+    public static final int ILOAD = 0x15;
+    public static final int LLOAD = 0x16;
+    public static final int ALOAD = 0x19;
+    public static final int IALOAD = 0x2e;
+    public static final int AALOAD = 0x32;
+    public static final int ISTORE = 0x36;
+    public static final int LSTORE = 0x37;
+    public static final int ASTORE = 0x3a;
+    public static final int LADD = 0x61;
+    public static final int ISUB = 0x64;
+    public static final int IINC = 0x84;
+    public static final int LCMP = 0x94;
+    public static final int IFNE = 0x9a;
+    public static final int IFLT = 0x9b;
+    public static final int IFGE = 0x9c;
+    public static final int IF_ICMPLT = 0xa1;
+    public static final int GOTO = 0xa7;
+    public static final int TABLESWITCH = 0xaa;
+    public static final int IRETURN = 0xac;
+    public static final int RETURN = 0xb1;
+    public static final int GETSTATIC = 0xb2;
+    public static final int PUTSTATIC = 0xb3;
+    public static final int GETFIELD = 0xb4;
+    public static final int PUTFIELD = 0xb5;
+    public static final int INVOKEVIRTUAL = 0xb6;
+    public static final int INVOKESPECIAL = 0xb7;
+    public static final int INVOKESTATIC = 0xb8;
+    public static final int ARRAYLENGTH = 0xbe;
+    public static final int CHECKCAST = 0xc0;
+
+    public static class Label {
+        private int position = -1;
+
+        public boolean isPlaced() {return position >= 0;}
+    }
+
+    private static class Fixup {
+        final Label label;
+        final int instruction;
+        final int at;
+        final boolean wide;
+
+        Fixup(Label label, int instruction, int at, boolean wide) {
+            this.label = label;
+            this.instruction = instruction;
+            this.at = at;
+            this.wide = wide;
+        }
+    }
+
+    private static class Method {
+        int access;
+        int name;
+        int descriptor;
+        int maxStack;
+        int maxLocals;
+        byte[] code;
+    }
+
+    private final ByteArrayOutputStream pool = new ByteArrayOutputStream();
+    private final DataOutputStream poolData = new DataOutputStream(pool);
+    private final HashMap<String, Integer> constants = new HashMap<String, Integer>();
+    private int poolCount = 1;
+    private final List<Method> methods = new ArrayList<Method>();
+    // Name and descriptor of every field, all of them private static final.
+    private final List<int[]> fields = new ArrayList<int[]>();
+    private final String name;
+    private final String superName;
+
+    private ByteArrayOutputStream code;
+    private List<Fixup> fixups;
+
+    public ClassAssembler(String name, String superName) {
+        this.name = name;
+        this.superName = superName;
+    }
+
+    private int constant(String key, int tag, int a, int b, String text) {
+        /**
+         * Adds an entry to the constant pool, unless the same one is already
+         * there.
+         *
+         * @param key       what tells the entry apart from every other one
+         * @param tag       the kind of entry
+         * @param a         the first index or the integer of the entry
+         * @param b         the second index of the entry, if it has one
+         * @param text      the text of a Utf8 entry
+         * @return          the index of the entry
+         */
+        Integer index = constants.get(key);
+        if (index != null) {
+            return index;
+        }
+        if (poolCount == 0xffff) {
+            throw new RuntimeException("The constant pool is full!");
+        }
+        try {
+            poolData.writeByte(tag);
+            switch (tag) {
+                case 1:
+                    poolData.writeUTF(text);
+                    break;
+                case 3:
+                    poolData.writeInt(a);
+                    break;
+                case 7:
+                case 8:
+                    poolData.writeShort(a);
+                    break;
+                default:
+                    poolData.writeShort(a);
+                    poolData.writeShort(b);
+                    break;
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        constants.put(key, poolCount);
+        return poolCount++;
+    }
+
+    public int utf8(String text) {return constant("U" + text, 1, 0, 0, text);}
+    public int integer(int n) {return constant("I" + n, 3, n, 0, null);}
+    public int classRef(String name) {return constant("C" + name, 7, utf8(name), 0, null);}
+
+    private int nameAndType(String name, String descriptor) {
+        return constant("N" + name + ":" + descriptor, 12, utf8(name), utf8(descriptor), null);
+    }
+
+    public int fieldRef(String owner, String name, String descriptor) {
+        return constant("F" + owner + "." + name + ":" + descriptor, 9, classRef(owner), nameAndType(name, descriptor), null);
+    }
+
+    public int methodRef(String owner, String name, String descriptor) {
+        return constant("M" + owner + "." + name + ":" + descriptor, 10, classRef(owner), nameAndType(name, descriptor), null);
+    }
+
+    public void field(String name, String descriptor) {
+        /**
+         * Adds a private static final field, which the class initializer
+         * has to set. The JIT takes what it holds as a constant.
+         */
+        fields.add(new int[] {utf8(name), utf8(descriptor)});
+    }
+
+    public void beginMethod() {
+        code = new ByteArrayOutputStream();
+        fixups = new ArrayList<Fixup>();
+    }
+
+    public void endMethod(String name, String descriptor, int maxStack, int maxLocals) {
+        endMethod(ACC_PUBLIC, name, descriptor, maxStack, maxLocals);
+    }
+
+    public void endClassInitializer(int maxStack) {endMethod(ACC_STATIC, "<clinit>", "()V", maxStack, 0);}
+
+    private void endMethod(int access, String name, String descriptor, int maxStack, int maxLocals) {
+        /**
+         * Resolves every jump of the method written since beginMethod() and
+         * adds it to the class.
+         *
+         * @throws          if the method is too big to branch around in
+         */
+        byte[] bytes = code.toByteArray();
+        if (bytes.length > Short.MAX_VALUE) {
+            throw new RuntimeException("Method " + name + " is too big to assemble!");
+        }
+        for (Fixup fixup : fixups) {
+            int offset = fixup.label.position - fixup.instruction;
+            if (fixup.label.position < 0) {
+                throw new RuntimeException("Label was never placed!");
+            }
+            if (fixup.wide) {
+                bytes[fixup.at] = (byte)(offset >>> 24);
+                bytes[fixup.at + 1] = (byte)(offset >>> 16);
+                bytes[fixup.at + 2] = (byte)(offset >>> 8);
+                bytes[fixup.at + 3] = (byte)offset;
+            } else {
+                bytes[fixup.at] = (byte)(offset >>> 8);
+                bytes[fixup.at + 1] = (byte)offset;
+            }
+        }
+        Method method = new Method();
+        method.access = access;
+        method.name = utf8(name);
+        method.descriptor = utf8(descriptor);
+        method.maxStack = maxStack;
+        method.maxLocals = maxLocals;
+        method.code = bytes;
+        methods.add(method);
+        code = null;
+        fixups = null;
+    }
+
+    public int position() {return code.size();}
+
+    public void op(int opcode) {code.write(opcode);}
+
+    public void op(int opcode, int u1) {
+        code.write(opcode);
+        code.write(u1);
+    }
+
+    public void op2(int opcode, int u2) {
+        code.write(opcode);
+        code.write(u2 >>> 8);
+        code.write(u2);
+    }
+
+    public void iinc(int local, int n) {
+        code.write(IINC);
+        code.write(local);
+        code.write(n);
+    }
+
+    public void pushInt(int n) {
+        /**
+         * Pushes an int constant with the shortest instruction that holds it.
+         *
+         * @param n         the constant
+         */
+        if (n >= -1 && n <= 5) {
+            op(ICONST_0 + n);
+        } else if (n >= Byte.MIN_VALUE && n <= Byte.MAX_VALUE) {
+            op(BIPUSH, n & 0xff);
+        } else if (n >= Short.MIN_VALUE && n <= Short.MAX_VALUE) {
+            op2(SIPUSH, n & 0xffff);
+        } else {
+            int index = integer(n);
+            if (index < 256) {op(LDC, index);}
+            else {op2(LDC_W, index);}
+        }
+    }
+
+    public void bind(Label label) {label.position = code.size();}
+
+    public void jump(int opcode, Label label) {
+        int instruction = code.size();
+        code.write(opcode);
+        fixups.add(new Fixup(label, instruction, code.size(), false));
+        code.write(0);
+        code.write(0);
+    }
+
+    public void tableswitch(Label otherwise, Label[] targets) {
+        /**
+         * Jumps to targets[i] for the int i on the stack, or to otherwise
+         * when there is no such target.
+         *
+         * @param otherwise     where to go for any other int
+         * @param targets       where to go for 0, 1, 2 and so on
+         */
+        int instruction = code.size();
+        code.write(TABLESWITCH);
+        while (code.size() % 4 != 0) {
+            code.write(0);
+        }
+        writeOffset(otherwise, instruction);
+        writeInt(0);
+        writeInt(targets.length - 1);
+        for (Label target : targets) {
+            writeOffset(target, instruction);
+        }
+    }
+
+    private void writeOffset(Label label, int instruction) {
+        fixups.add(new Fixup(label, instruction, code.size(), true));
+        writeInt(0);
+    }
+
+    private void writeInt(int n) {
+        code.write(n >>> 24);
+        code.write(n >>> 16);
+        code.write(n >>> 8);
+        code.write(n);
+    }
+
+    public byte[] toByteArray() {
+        /**
+         * Writes out the class file.
+         *
+         * @return          the bytes of the class file
+         */
+        int thisClass = classRef(name);
+        int superClass = classRef(superName);
+        int codeName = utf8("Code");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(VERSION);
+            out.writeShort(poolCount);
+            pool.writeTo(out);
+            out.writeShort(ACC_PUBLIC | ACC_SUPER);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(0);
+            out.writeShort(fields.size());
+            for (int[] field : fields) {
+                out.writeShort(ACC_PRIVATE | ACC_STATIC | ACC_FINAL);
+                out.writeShort(field[0]);
+                out.writeShort(field[1]);
+                out.writeShort(0);
+            }
+            out.writeShort(methods.size());
+            for (Method method : methods) {
+                out.writeShort(method.access);
+                out.writeShort(method.name);
+                out.writeShort(method.descriptor);
+                out.writeShort(1);
+                out.writeShort(codeName);
+                out.writeInt(12 + method.code.length);
+                out.writeShort(method.maxStack);
+                out.writeShort(method.maxLocals);
+                out.writeInt(method.code.length);
+                out.write(method.code);
+                out.writeShort(0);
+                out.writeShort(0);
+            }
+            out.writeShort(0);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,141 @@
+package src;
+public abstract class CompiledProgram {
+    // Compiled programs extend this class. One is made for every program
+    // and shared by all of its runs, so it holds nothing a run changes. The
+    // generated code keeps the cell, direction and layer to itself and calls
+    // back to the Context of its run for everything that touches the
+    // accumulator or the drops.
+
+    // The most steps the generated code takes without passing a checkpoint.
+    public int span;
+    // Which of the generated methods has the code of each block.
+    public int[] parts;
+
+    // Thrown out of the generated code when the budget runs out.
+    private static class Stop extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        Stop() {
+            super(null, null, false, false);
+        }
+    }
+
+    public boolean run(Machine machine) {
+        /**
+         * Runs the compiled program from the start until it terminates, its
+         * budget runs out, or it comes close enough to its step limit that
+         * the interpreter has to take the last steps.
+         *
+         * @param machine   the machine that holds the input, accumulator, drops and budget
+         * @return          true if the program terminated, false if the
+         *                  machine was stopped or has to run the rest
+         */
+        if (machine.stepLimit - machine.steps <= span) {
+            return false;
+        }
+        try {
+            execute(new Context(machine, span));
+        } catch (Stop e) {
+            return false;
+        }
+        return true;
+    }
+
+    protected abstract void execute(Context context);
+
+    public static final class Context {
+        // Everything one run of the generated code changes.
+        public final Machine machine;
+        public final Accumulator accumulator;
+        public final DropStore drops;
+        public final OutputSink output;
+        public final long resetLayer;
+        public long nextCheck;
+        // Where the run is while it goes from one generated method to another.
+        public long layer;
+        public long steps;
+        private final int span;
+        private long layerStarted;
+
+        Context(Machine machine, int span) {
+            this.machine = machine;
+            this.accumulator = machine.accumulator;
+            this.drops = machine.drops;
+            this.output = machine.output;
+            this.resetLayer = machine.resetLayer;
+            this.span = span;
+            this.nextCheck = Math.min(machine.nextCheck, machine.stepLimit - span);
+            this.layerStarted = System.nanoTime();
+        }
+
+        public Value stdin(long layer) {return (Value)machine.pickUp(Opcode.STDIN_INPUT, layer);}
+
+        public void push(Value value) {
+            accumulator.push(value);
+            evaluate();
+        }
+
+        public void push(Operator operator) {
+            accumulator.push(operator);
+            evaluate();
+        }
+
+        public void store(int cell, int layersDown) {
+            drops.store(cell, layersDown, accumulator);
+            evaluate();
+        }
+
+        private void evaluate() {
+            if (accumulator.isAmorphous || !accumulator.evaluate()) {
+                accumulator.amorphousClear();
+                if (accumulator.overBudget) {
+                    nextCheck = Long.MIN_VALUE;
+                }
+            }
+        }
+
+        public void advance(long layer, long steps) {
+            drops.advance();
+            if (TimelineEvents.isLayerChangeEnabled()) {
+                long now = System.nanoTime();
+                TimelineEvents.layerChange((layer == 0) ? resetLayer - 1 : layer - 1, layer, steps, now - layerStarted);
+                layerStarted = now;
+            }
+        }
+        public boolean isTrue() {return accumulator.isTrue();}
+        public void clear() {accumulator.clear();}
+        public void terminate(long steps) {machine.steps = steps;}
+
+        public void checkpoint(long steps, int state, long layer) {
+            /**
+             * Checks the budget. The generated code calls this once the step
+             * count reaches nextCheck, at the start of every block that can
+             * loop back, so it never takes more than span steps between two
+             * calls. Once the step limit is less than that away, the machine
+             * is moved to where the generated code is and the interpreter
+             * takes over, so the run stops on exactly the same step.
+             *
+             * @param steps     the steps taken before the block
+             * @param state     the cell and the direction of the block
+             * @param layer     the layer the data pointer is on
+             */
+            machine.steps = steps;
+            if (!machine.withinBudget() || machine.stepLimit - steps <= span) {
+                machine.moveTo(state / 4, Direction.values()[state % 4], layer);
+                throw new Stop();
+            }
+            nextCheck = Math.min(machine.nextCheck, machine.stepLimit - span);
+        }
+
+        public void print() {
+            accumulator.print(output);
+            machine.outputs++;
+        }
+
+        public void printAndClear() {
+            accumulator.print(output);
+            accumulator.clear();
+            machine.outputs++;
+        }
+    }
+}
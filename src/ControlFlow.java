@@ -0,0 +1,286 @@
+package src;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+
+public class ControlFlow {
+    // Where the data pointer goes only depends on the cell, the direction
+    // it came in, and, for the movement cells, the layer modulo the four
+    // directions they hold. Every other item is taken on faith: both ways
+    // out of a conditional turn are taken to be possible.
+    private static final int RESIDUES = 4;
+
+    // A state is cell * 16 + direction * 4 + layer % 4, which fits an int
+    // for every board up to this size.
+    public static final int MAX_SIZE = 1 << 26;
+
+    public static class Block {
+        // A straight line of states the data pointer always passes from
+        // first to last, and the blocks it can go to after the last.
+        public final int first;
+        public final int last;
+        public final int length;
+        public int[] next;
+
+        Block(int first, int last, int length) {
+            this.first = first;
+            this.last = last;
+            this.length = length;
+        }
+    }
+
+    public final Program program;
+    private final BitSet states = new BitSet();
+    private final BitSet cells = new BitSet();
+    // Split into blocks the first time someone asks for them.
+    private List<Block> blocks;
+    private Block entry;
+    private int stateCount = 0;
+    private boolean terminates = false;
+
+    private ControlFlow(Program program) {
+        this.program = program;
+    }
+
+    public static int state(int cell, Direction direction, int residue) {return cell * 16 + direction.ordinal() * RESIDUES + residue;}
+    public static int cellOf(int state) {return state >>> 4;}
+    public static Direction directionOf(int state) {return Direction.values()[(state >>> 2) & 3];}
+    public static int residueOf(int state) {return state & (RESIDUES - 1);}
+
+    public static ControlFlow analyze(Program program) {
+        /**
+         * Finds every state the data pointer can reach from the top left
+         * corner, going right on the first layer. They are split into
+         * straight-line blocks the first time blocks() is called. Use
+         * Program.flow() instead, which only does this once for every
+         * program, and not at all for one the cache saved it with.
+         *
+         * @param program   the decoded timeline code
+         * @return          what the data pointer can reach
+         */
+        if (program.size() > MAX_SIZE) {
+            throw new RuntimeException("Timeline code is too big to analyze! It can't have more than " + MAX_SIZE + " cells.");
+        }
+        ControlFlow flow = new ControlFlow(program);
+        flow.explore();
+        return flow;
+    }
+
+    private int successors(int state, int[] next) {
+        /**
+         * Lists the states the data pointer can be in after a state.
+         *
+         * @param state     the cell, the direction it came in and the layer modulo 4
+         * @param next      where to put them, with room for two
+         * @return          how many there are
+         */
+        int cell = cellOf(state);
+        Direction direction = directionOf(state);
+        int residue = residueOf(state);
+        Opcode opcode = program.opcode(cell);
+        switch (opcode) {
+            case MOVEMENT1:
+            case MOVEMENT2:
+            case MOVEMENT3:
+            case MOVEMENT4:
+                direction = Machine.movement(opcode, residue);
+                break;
+            case TURN_CLOCKWISE:
+                direction = direction.turnClockwise();
+                break;
+            case TURN_COUNTERCLOCKWISE:
+                direction = direction.turnCounterclockwise();
+                break;
+            case TURN_CLOCKWISE_IF_TRUE:
+            case TURN_COUNTERCLOCKWISE_IF_TRUE:
+                Direction turned = (opcode == Opcode.TURN_CLOCKWISE_IF_TRUE) ? direction.turnClockwise() : direction.turnCounterclockwise();
+                next[0] = state(program.next(cell, direction), direction, residue);
+                next[1] = state(program.next(cell, turned), turned, residue);
+                return 2;
+            case NEXT_LAYER:
+                residue = (residue + 1) & (RESIDUES - 1);
+                break;
+            case HOP:
+                cell = program.next(cell, direction);
+                break;
+            case TERMINATE:
+                return 0;
+            default:
+                break;
+        }
+        next[0] = state(program.next(cell, direction), direction, residue);
+        return 1;
+    }
+
+    private void explore() {
+        /**
+         * Walks every reachable state once.
+         */
+        int[] next = new int[2];
+        int start = state(0, Direction.RIGHT, 0);
+        int[] pending = new int[64];
+        int size = 0;
+        pending[size++] = start;
+        states.set(start);
+        while (size > 0) {
+            int state = pending[--size];
+            reached(state);
+            int count = successors(state, next);
+            for (int i = 0; i < count; i++) {
+                if (!states.get(next[i])) {
+                    states.set(next[i]);
+                    if (size == pending.length) {
+                        pending = Arrays.copyOf(pending, size * 2);
+                    }
+                    pending[size++] = next[i];
+                }
+            }
+        }
+    }
+
+    private void reached(int state) {
+        stateCount++;
+        cells.set(cellOf(state));
+        terminates |= program.opcode(cellOf(state)) == Opcode.TERMINATE;
+    }
+
+    private void split() {
+        /**
+         * Cuts the reachable states into blocks wherever the way splits or
+         * two ways meet.
+         */
+        int[] next = new int[2];
+        int start = state(0, Direction.RIGHT, 0);
+        BitSet entered = new BitSet();
+        BitSet leaders = new BitSet();
+        leaders.set(start);
+        for (int state = states.nextSetBit(0); state >= 0; state = states.nextSetBit(state + 1)) {
+            int count = successors(state, next);
+            for (int i = 0; i < count; i++) {
+                if (count > 1 || entered.get(next[i])) {
+                    leaders.set(next[i]);
+                }
+                entered.set(next[i]);
+            }
+        }
+        blocks = new ArrayList<Block>();
+        HashMap<Integer, Integer> index = new HashMap<Integer, Integer>();
+        for (int leader = leaders.nextSetBit(0); leader >= 0; leader = leaders.nextSetBit(leader + 1)) {
+            int state = leader;
+            int length = 1;
+            while (successors(state, next) == 1 && !leaders.get(next[0])) {
+                state = next[0];
+                length++;
+            }
+            index.put(leader, blocks.size());
+            blocks.add(new Block(leader, state, length));
+        }
+        entry = blocks.get(index.get(start));
+        for (Block block : blocks) {
+            int count = successors(block.last, next);
+            block.next = new int[count];
+            for (int i = 0; i < count; i++) {
+                block.next[i] = index.get(next[i]);
+            }
+        }
+    }
+
+    public boolean isReachable(int cell) {return cells.get(cell);}
+    public boolean isReachable(int cell, Direction direction, int residue) {return states.get(state(cell, direction, residue));}
+    public int reachableCells() {return cells.cardinality();}
+    public int reachableStates() {return stateCount;}
+    public synchronized List<Block> blocks() {
+        if (blocks == null) {
+            split();
+        }
+        return blocks;
+    }
+
+    public synchronized Block entry() {
+        blocks();
+        return entry;
+    }
+
+    public boolean canTerminate() {
+        /**
+         * Checks if the data pointer can ever get to an X. A program that
+         * can't will never end, whatever its input.
+         */
+        return terminates;
+    }
+
+    public int directions(int cell) {
+        /**
+         * Finds every direction the data pointer can leave a cell in.
+         *
+         * @param cell      the cell
+         * @return          one bit for each direction, by ordinal
+         */
+        int[] next = new int[2];
+        int mask = 0;
+        for (int state = state(cell, Direction.UP, 0); state < state(cell + 1, Direction.UP, 0); state++) {
+            if (states.get(state)) {
+                int count = successors(state, next);
+                for (int i = 0; i < count; i++) {
+                    mask |= 1 << directionOf(next[i]).ordinal();
+                }
+            }
+        }
+        return mask;
+    }
+
+    @Override
+    public String toString() {
+        return reachableCells() + " of " + program.size() + " cells reachable, in " + reachableStates()
+            + " states and " + blocks().size() + " straight-line block" + ((blocks().size() == 1) ? "" : "s");
+    }
+
+    public ByteBuffer image() {
+        /**
+         * Writes out the reachable states, so a program saved with them never
+         * has to be analyzed again: how many there are, then every one of
+         * them in order.
+         *
+         * @return          what restore() reads back
+         */
+        ByteBuffer image = ByteBuffer.allocate(4 + 4 * stateCount).putInt(stateCount);
+        for (int state = states.nextSetBit(0); state >= 0; state = states.nextSetBit(state + 1)) {
+            image.putInt(state);
+        }
+        return image.flip();
+    }
+
+    public static ControlFlow restore(Program program, ByteBuffer image, int at) {
+        /**
+         * Reads the reachable states written by image() back.
+         *
+         * @param program   the program they were worked out for
+         * @param image     where they were saved
+         * @param at        where they start in it
+         * @return          what the data pointer can reach, or null if the
+         *                  states are not ones of this program
+         */
+        if (program.size() > MAX_SIZE || image.limit() - at < 4) {
+            return null;
+        }
+        int count = image.getInt(at);
+        if (count <= 0 || image.limit() - at - 4 != 4L * count) {
+            return null;
+        }
+        ControlFlow flow = new ControlFlow(program);
+        int previous = -1;
+        for (int i = 0; i < count; i++) {
+            int state = image.getInt(at + 4 + 4 * i);
+            if (state <= previous || cellOf(state) >= program.size()) {
+                return null;
+            }
+            flow.states.set(state);
+            flow.reached(state);
+            previous = state;
+        }
+        return flow.states.get(state(0, Direction.RIGHT, 0)) ? flow : null;
+    }
+}
@@ -0,0 +1,84 @@
+package src;
+public class CycleDetector {
+    // Brent's algorithm: the saved state moves up to the current one every
+    // time the number of steps since it was saved reaches the next power of
+    // two, so a cycle of any length is caught within a few laps of it.
+    // Printing only marks the saved state as stale, and the next power of
+    // two replaces it, so a program that prints all the time isn't copied
+    // on every print.
+    private Machine anchor;
+    private Machine saved;
+    private boolean stale;
+    private long outputs;
+    private long power;
+    private long lambda;
+
+    public long cycleLength;
+    public long cycleStart;
+
+    public CycleDetector(Machine machine) {
+        anchor = new Machine(machine);
+        saved = anchor;
+        outputs = machine.outputs;
+        power = 1;
+        lambda = 0;
+    }
+
+    public boolean check(Machine machine) {
+        /**
+         * Checks the machine after it took a step. A loop that prints is not
+         * stuck, so the machine is only compared with a state saved after it
+         * last printed. Once the machine is back in a state it was in before,
+         * it will repeat that loop forever, so the length and the first step
+         * of the loop are recorded.
+         *
+         * @param machine   the machine that just took a step
+         * @return          whether or not the machine is stuck in a loop
+         */
+        if (machine.outputs != outputs) {
+            outputs = machine.outputs;
+            stale = true;
+        }
+        lambda++;
+        if (!stale && machine.sameState(saved)) {
+            cycleLength = lambda;
+            cycleStart = findCycleStart();
+            return true;
+        }
+        if (lambda == power) {
+            if (stale) {
+                // The state saved before the print comes before the loop,
+                // so the search for where the loop starts begins there.
+                anchor = saved;
+                stale = false;
+            }
+            saved = new Machine(machine);
+            power *= 2;
+            lambda = 0;
+        }
+        return false;
+    }
+
+    private long findCycleStart() {
+        /**
+         * Replays the run from a state saved before it last printed, with
+         * one machine a cycle length ahead of the other. The first step where
+         * both are in the same state is where the loop starts, since a state
+         * that came back before the last print would have printed forever.
+         * What the replay prints is thrown away.
+         *
+         * @return          the step the loop starts on
+         */
+        OutputSink nowhere = text -> {};
+        Machine tortoise = new Machine(anchor, nowhere);
+        Machine hare = new Machine(anchor, nowhere);
+        for (long i = 0; i < cycleLength; i++) {
+            hare.step();
+        }
+        while (!tortoise.sameState(hare)) {
+            tortoise.step();
+            hare.step();
+        }
+        return tortoise.steps;
+    }
+}
@@ -0,0 +1,13 @@
+package src;
+public enum Direction {
+    UP,
+    LEFT,
+    DOWN,
+    RIGHT;
+
+    // Declared counterclockwise, so turning is a step through the ordinals.
+    private static final Direction[] VALUES = values();
+
+    public Direction turnClockwise() {return VALUES[(ordinal() + 3) & 3];}
+    public Direction turnCounterclockwise() {return VALUES[(ordinal() + 1) & 3];}
+}
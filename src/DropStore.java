@@ -0,0 +1,204 @@
+package src;
+import java.util.Arrays;
+
+public class DropStore {
+    public static final int DEPTH = 10;
+
+    private final Layer[] ring = new Layer[DEPTH];
+    private int head;
+
+    public DropStore() {
+        for (int i = 0; i < DEPTH; i++) {
+            ring[i] = new Layer();
+        }
+        head = 0;
+    }
+
+    public DropStore(DropStore store) {
+        for (int i = 0; i < DEPTH; i++) {
+            ring[i] = new Layer(store.layer(i));
+        }
+        head = 0;
+    }
+
+    public boolean sameState(DropStore store) {
+        /**
+         * Checks if the other store holds exactly the same drops on the same
+         * layers.
+         *
+         * @param store     the store to compare with
+         * @return          whether or not both stores are the same
+         */
+        for (int i = 0; i < DEPTH; i++) {
+            if (!layer(i).sameState(store.layer(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Layer layer(int layersDown) {return ring[(head + layersDown) % DEPTH];}
+
+    public long size() {
+        /**
+         * Adds up how many characters the drops on every layer hold.
+         */
+        long size = 0;
+        for (Layer layer : ring) {
+            size += layer.chars;
+        }
+        return size;
+    }
+
+    public void store(int cell, int layersDown, Accumulator accumulator) {
+        /**
+         * Runs a storage cell. If something was dropped on this cell on the
+         * current layer, it is picked up into the left-value, or else the
+         * right-value. Otherwise, a copy of the left-value is dropped on this
+         * cell some layers down, unless something is already there.
+         *
+         * @param cell          the storage cell
+         * @param layersDown    how many layers down the storage cell drops
+         * @param accumulator   the accumulator to pick up into or drop from
+         */
+        Layer current = ring[head];
+        if (current.contains(cell) && accumulator.left.isEmpty())
+            accumulator.left = current.remove(cell);
+        else if (current.contains(cell) && accumulator.right.isEmpty())
+            accumulator.right = current.remove(cell);
+        else if (!layer(layersDown).contains(cell) && !accumulator.left.isEmpty())
+            layer(layersDown).put(cell, accumulator.left);
+    }
+
+    public void advance() {
+        /**
+         * Moves down to the next layer. The current layer goes to the back of
+         * the ring and is cleared to become the furthest layer down.
+         */
+        ring[head].clear();
+        head = (head + 1) % DEPTH;
+    }
+
+    public void advance(int layers) {
+        /**
+         * Moves down several layers at once. Only the layers that go to the
+         * back of the ring need clearing, so this never takes longer than
+         * going down all ten.
+         *
+         * @param layers    how many layers to go down
+         */
+        for (int i = 0; i < Math.min(layers, DEPTH); i++) {
+            ring[(head + i) % DEPTH].clear();
+        }
+        head = (int)((head + (long)layers) % DEPTH);
+    }
+
+    private static class Layer {
+        // Open addressing with linear probing, keyed by the cell index. A slot
+        // is free when it has no value, since a drop is never empty.
+        private int[] cells = new int[16];
+        private Value[] values = new Value[16];
+        private int size = 0;
+        private long chars = 0;
+
+        Layer() {}
+
+        Layer(Layer layer) {
+            cells = layer.cells.clone();
+            values = layer.values.clone();
+            size = layer.size;
+            chars = layer.chars;
+        }
+
+        private static int hash(int cell) {
+            int h = cell * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+
+        private int slot(int cell) {
+            int mask = cells.length - 1;
+            int i = hash(cell) & mask;
+            while (values[i] != null && cells[i] != cell) {
+                i = (i + 1) & mask;
+            }
+            return i;
+        }
+
+        boolean contains(int cell) {
+            return get(cell) != null;
+        }
+
+        void put(int cell, Value value) {
+            if ((size + 1) * 2 > cells.length) {
+                grow();
+            }
+            int i = slot(cell);
+            if (values[i] == null) {
+                size++;
+            } else {
+                chars -= values[i].size();
+            }
+            chars += value.size();
+            cells[i] = cell;
+            values[i] = value;
+        }
+
+        Value remove(int cell) {
+            int mask = cells.length - 1;
+            int i = slot(cell);
+            Value value = values[i];
+            values[i] = null;
+            size--;
+            chars -= value.size();
+            // Shift the rest of the probe run back so lookups never stop early.
+            for (int j = (i + 1) & mask; values[j] != null; j = (j + 1) & mask) {
+                int home = hash(cells[j]) & mask;
+                if (((j - home) & mask) >= ((j - i) & mask)) {
+                    cells[i] = cells[j];
+                    values[i] = values[j];
+                    values[j] = null;
+                    i = j;
+                }
+            }
+            return value;
+        }
+
+        boolean sameState(Layer layer) {
+            if (size != layer.size) {
+                return false;
+            }
+            for (int i = 0; i < cells.length && size != 0; i++) {
+                if (values[i] != null && !values[i].equals(layer.get(cells[i]))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        Value get(int cell) {
+            return (size == 0) ? null : values[slot(cell)];
+        }
+
+        void clear() {
+            if (size != 0) {
+                Arrays.fill(values, null);
+                size = 0;
+                chars = 0;
+            }
+        }
+
+        private void grow() {
+            int[] oldCells = cells;
+            Value[] oldValues = values;
+            cells = new int[oldCells.length * 2];
+            values = new Value[oldCells.length * 2];
+            size = 0;
+            chars = 0;
+            for (int i = 0; i < oldCells.length; i++) {
+                if (oldValues[i] != null) {
+                    put(oldCells[i], oldValues[i]);
+                }
+            }
+        }
+    }
+}
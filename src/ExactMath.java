@@ -0,0 +1,336 @@
+package src;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+public final class ExactMath {
+    // Integer operators for exact arithmetic. Integers are added up as longs,
+    // and only turn into BigIntegers when the result would overflow one, so
+    // the small numbers nearly every program works with cost no more than
+    // ints do. Every method returns null when the result is undefined.
+
+    // Results that would take more bits than this, about 20 million digits, are
+    // too big to make at all, like strings too long for a String.
+    public static final int MAX_BITS = 1 << 26;
+
+    private ExactMath() {}
+
+    public static boolean covers(Operator operator) {
+        /**
+         * Checks if exact arithmetic takes over the operator when its values
+         * are integers, or when it rounds a float to one.
+         *
+         * @param operator  the operator
+         * @return          whether or not the operator is exact
+         */
+        switch (operator) {
+            case ADD:
+            case SUB:
+            case MULT:
+            case DIV:
+            case POW:
+            case MOD:
+            case BAND:
+            case BOR:
+            case BXOR:
+            case BLSHIFT:
+            case BRSHIFT:
+            case BRSHIFTPLUS:
+            case NEG:
+            case BNOT:
+            case ROUND:
+            case CEIL:
+            case FLOOR:
+            case TRUNC:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    public static Value binary(Value left, Operator operator, Value right) {
+        /**
+         * Evaluates a binary operator on two integers exactly.
+         *
+         * @param left      the integer on the left
+         * @param operator  an operator the exact arithmetic covers
+         * @param right     the integer on the right
+         * @return          the result, or null if there is none
+         */
+        if (left.isLong() && right.isLong()) {
+            long a = left.longValue();
+            long b = right.longValue();
+            switch (operator) {
+                case ADD: {
+                    long r = a + b;
+                    if (((a ^ r) & (b ^ r)) >= 0) {
+                        return Value.of(r);
+                    }
+                    break;
+                }
+                case SUB: {
+                    long r = a - b;
+                    if (((a ^ b) & (a ^ r)) >= 0) {
+                        return Value.of(r);
+                    }
+                    break;
+                }
+                case MULT: {
+                    long r = a * b;
+                    if (Math.multiplyHigh(a, b) == (r >> 63)) {
+                        return Value.of(r);
+                    }
+                    break;
+                }
+                case DIV:
+                    if (b == 0) {
+                        return null;
+                    }
+                    if (a != Long.MIN_VALUE || b != -1) {
+                        return Value.of(a / b);
+                    }
+                    break;
+                case POW:
+                    if (b < 0) {
+                        return Value.of(1);
+                    }
+                    if (powFits(a, b)) {
+                        return Value.of(pow(a, b));
+                    }
+                    break;
+                case MOD:
+                    if (b == 0) {
+                        return null;
+                    }
+                    if (a != Long.MIN_VALUE && b != Long.MIN_VALUE) {
+                        return Value.of(mod(a, b));
+                    }
+                    break;
+                case BAND:
+                    return Value.of(a & b);
+                case BOR:
+                    return Value.of(a | b);
+                case BXOR:
+                    return Value.of(a ^ b);
+                case BLSHIFT:
+                    if (b >= 0 && b < 63 && (a << b) >> b == a) {
+                        return Value.of(a << b);
+                    }
+                    if (b < 0 && b > -64) {
+                        return Value.of(a >> -b);
+                    }
+                    break;
+                case BRSHIFT:
+                    if (b >= 0) {
+                        return Value.of(a >> Math.min(b, 63));
+                    }
+                    break;
+                case BRSHIFTPLUS:
+                    // Filling in zeros only means something at a set width,
+                    // which is 64 bits. Java only takes the count modulo 64,
+                    // so counts of 64 bits or more shift every bit out, and
+                    // a negative count shifts left within the 64 bits.
+                    if (b >= 64 || b <= -64) {
+                        return Value.of(0);
+                    }
+                    return Value.of((b >= 0) ? a >>> b : a << -b);
+                default:
+                    return null;
+            }
+        }
+        return big(left.bigValue(), operator, right);
+    }
+
+    private static Value big(BigInteger a, Operator operator, Value right) {
+        switch (operator) {
+            case ADD:
+                return Value.of(a.add(right.bigValue()));
+            case SUB:
+                return Value.of(a.subtract(right.bigValue()));
+            case MULT:
+                if ((long)a.bitLength() + right.bigValue().bitLength() > MAX_BITS) {
+                    return null;
+                }
+                return Value.of(a.multiply(right.bigValue()));
+            case DIV:
+                if (right.bigValue().signum() == 0) {
+                    return null;
+                }
+                return Value.of(a.divide(right.bigValue()));
+            case POW:
+                return pow(a, right);
+            case MOD:
+                return mod(a, right.bigValue());
+            case BAND:
+                return Value.of(a.and(right.bigValue()));
+            case BOR:
+                return Value.of(a.or(right.bigValue()));
+            case BXOR:
+                return Value.of(a.xor(right.bigValue()));
+            case BLSHIFT:
+                return shift(a, right, false);
+            case BRSHIFT:
+                return shift(a, right, true);
+            case BRSHIFTPLUS:
+                // Only a count too big for a long gets here with a long on
+                // the left, and it shifts all 64 bits out either way.
+                return (a.bitLength() < 64) ? Value.of(0) : null;
+            default:
+                return null;
+        }
+    }
+
+    public static Value unary(Operator operator, Value left) {
+        /**
+         * Evaluates a unary operator exactly. Integers are negated and
+         * inverted exactly, and floats are rounded to integers of any size.
+         *
+         * @param operator  the unary operator
+         * @param left      the number
+         * @return          the result, or null if there is none
+         */
+        if (left.isIntegral()) {
+            switch (operator) {
+                case NEG:
+                    if (left.isLong() && left.longValue() != Long.MIN_VALUE) {
+                        return Value.of(-left.longValue());
+                    }
+                    return Value.of(left.bigValue().negate());
+                case BNOT:
+                    return left.isLong() ? Value.of(~left.longValue()) : Value.of(left.bigValue().not());
+                case ROUND:
+                case CEIL:
+                case FLOOR:
+                case TRUNC:
+                    return left;
+                default:
+                    return null;
+            }
+        }
+        double n = left.doubleValue;
+        switch (operator) {
+            case ROUND:
+                return (Math.abs(n) < 0x1p62) ? Value.of(Math.round(n)) : integer(n);
+            case CEIL:
+                return integer(Math.ceil(n));
+            case FLOOR:
+                return integer(Math.floor(n));
+            case TRUNC:
+                return integer((n < 0) ? Math.ceil(n) : Math.floor(n));
+            default:
+                return null;
+        }
+    }
+
+    public static boolean isUnary(Operator operator) {
+        /**
+         * Checks if unary() evaluates the operator. A binary operator only
+         * waits for its right value, so it never gets there.
+         */
+        return operator == Operator.NEG || operator == Operator.BNOT || rounds(operator);
+    }
+
+    public static boolean rounds(Operator operator) {
+        return operator == Operator.ROUND || operator == Operator.CEIL || operator == Operator.FLOOR || operator == Operator.TRUNC;
+    }
+
+    private static Value integer(double n) {
+        /**
+         * Turns a float with nothing after the point into an integer. Those
+         * past the range of a long are converted through a BigDecimal.
+         */
+        if (Double.isNaN(n) || Double.isInfinite(n)) {
+            return null;
+        }
+        if (Math.abs(n) < 0x1p63) {
+            return Value.of((long)n);
+        }
+        return Value.of(new BigDecimal(n).toBigInteger());
+    }
+
+    private static long pow(long a, long b) {
+        long exp = 1;
+        for (; b > 0; b >>= 1, a *= a) {
+            if ((b & 1) != 0) {exp *= a;}
+        }
+        return exp;
+    }
+
+    private static boolean powFits(long a, long b) {
+        /**
+         * Checks if a ** b fits a long, from how many bits a takes up.
+         */
+        if (a >= -1 && a <= 1) {
+            return true;
+        }
+        long bits = 64 - Long.numberOfLeadingZeros(Math.abs(a));
+        return b < 63 && bits * b < 63;
+    }
+
+    private static Value pow(BigInteger a, Value right) {
+        BigInteger b = right.bigValue();
+        if (b.signum() < 0) {
+            return Value.of(1);
+        }
+        if (b.signum() == 0) {
+            return Value.of(1);
+        }
+        // Zero and one stay where they are however high the power, and minus one takes turns.
+        if (a.signum() == 0 || a.equals(BigInteger.ONE)) {
+            return Value.of(a);
+        }
+        if (a.equals(BigInteger.ONE.negate())) {
+            return Value.of(b.testBit(0) ? -1 : 1);
+        }
+        if (b.bitLength() > 31 || (long)a.bitLength() * b.intValue() > MAX_BITS) {
+            return null;
+        }
+        return Value.of(a.pow(b.intValue()));
+    }
+
+    private static long mod(long a, long b) {
+        /**
+         * Returns a mod b the same way the integer operator does.
+         */
+        if (Long.signum(a) == Long.signum(b)) {
+            return Math.abs(a) % Math.abs(b) * Long.signum(b);
+        } else if (a == 0) {
+            return 0;
+        } else {
+            return (Math.abs(b) - Math.abs(a) % Math.abs(b)) * Long.signum(b);
+        }
+    }
+
+    private static Value mod(BigInteger a, BigInteger b) {
+        if (b.signum() == 0) {
+            return null;
+        }
+        BigInteger remainder = a.abs().remainder(b.abs());
+        if (a.signum() == b.signum()) {
+            return Value.of(b.signum() < 0 ? remainder.negate() : remainder);
+        } else if (a.signum() == 0) {
+            return Value.of(0);
+        } else {
+            BigInteger r = b.abs().subtract(remainder);
+            return Value.of(b.signum() < 0 ? r.negate() : r);
+        }
+    }
+
+    private static Value shift(BigInteger a, Value right, boolean toRight) {
+        /**
+         * Shifts an integer by any number of bits. Shifting left multiplies
+         * by a power of two and shifting right divides by one rounding down,
+         * and a negative count shifts the other way.
+         */
+        BigInteger count = right.bigValue();
+        if (toRight) {
+            count = count.negate();
+        }
+        if (count.signum() > 0 && (count.bitLength() > 31 || a.bitLength() + count.longValue() > MAX_BITS)) {
+            return (a.signum() == 0) ? Value.of(0) : null;
+        }
+        if (count.signum() < 0 && count.bitLength() > 31) {
+            return Value.of(a.signum() < 0 ? -1 : 0);
+        }
+        return Value.of(a.shiftLeft(count.intValue()));
+    }
+}
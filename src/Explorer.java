@@ -0,0 +1,250 @@
+package src;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+public class Explorer {
+    // Runs a program on every input up to some length over an alphabet at
+    // once. All inputs start as one run, which only splits when the data
+    // pointer picks up a character of the input no run before it has, so
+    // the steps before that are taken once for all of them. The splits run
+    // on a work-stealing pool. Only a run that repeats its own state is cut
+    // short. Two runs that reach the same state differ in a character they
+    // picked up, so each is run to its end.
+
+    // Runs without a step limit could go on forever, so they get this one.
+    public static final long DEFAULT_STEPS = 1 << 20;
+    // The most inputs one exploration reports on.
+    public static final int MAX_INPUTS = 1 << 24;
+
+    public static class Outcome {
+        public final String input;
+        public final RunResult.ExitReason exitReason;
+        public final String output;
+        public final long steps;
+
+        Outcome(String input, RunResult.ExitReason exitReason, String output, long steps) {
+            this.input = input;
+            this.exitReason = exitReason;
+            this.output = output;
+            this.steps = steps;
+        }
+
+        @Override
+        public String toString() {return escape(input) + "\t" + exitReason + "\t" + escape(output);}
+    }
+
+    private static class Partial extends StdinInput {
+        // An input of which only the characters some run picked up are
+        // known. The others are never pushed, since the run splits first.
+        final char[] chars;
+        final boolean[] known;
+
+        Partial(int length) {
+            chars = new char[length];
+            known = new boolean[length];
+        }
+
+        Partial(Partial input, int position, char c) {
+            chars = input.chars.clone();
+            known = input.known.clone();
+            chars[position] = c;
+            known[position] = true;
+        }
+
+        public int length() {return chars.length + 1;}
+        public Value get(int index) {return of((index < chars.length && known[index]) ? chars[index] : '\0');}
+    }
+
+    private static class Leaf {
+        final Partial input;
+        final RunResult.ExitReason exitReason;
+        final String output;
+        final long steps;
+
+        Leaf(Partial input, RunResult.ExitReason exitReason, String output, long steps) {
+            this.input = input;
+            this.exitReason = exitReason;
+            this.output = output;
+            this.steps = steps;
+        }
+    }
+
+    private final String alphabet;
+
+    private Explorer(String alphabet) {
+        this.alphabet = alphabet;
+    }
+
+    private class Path extends RecursiveTask<List<Leaf>> {
+        private static final long serialVersionUID = 1L;
+
+        // The machine the run starts from, which is never stepped, and what
+        // was printed before it. Tasks are never serialized.
+        private final transient Machine from;
+        private final transient Partial input;
+        private final String printed;
+
+        Path(Machine from, Partial input, String printed) {
+            this.from = from;
+            this.input = input;
+            this.printed = printed;
+        }
+
+        protected List<Leaf> compute() {
+            /**
+             * Runs until the run ends or picks up a character nobody knows
+             * yet, and then runs every choice of it. A run that comes back
+             * to a state it was in before repeats forever, with Brent's
+             * algorithm like CycleDetector, but printing does not count:
+             * a loop that prints never ends either.
+             *
+             * @return          how every input this run covers ends
+             */
+            CaptureSink output = new CaptureSink();
+            Machine machine = new Machine(from, input, output);
+            Machine saved = new Machine(machine);
+            long power = 1;
+            long lambda = 0;
+            for (;;) {
+                if (machine.steps >= machine.nextCheck && !machine.withinBudget()) {
+                    return leaf(machine, machine.stopped, output);
+                }
+                if (machine.program.opcode(machine.cell) == Opcode.STDIN_INPUT) {
+                    int position = Machine.remainder(machine.layer, input.length());
+                    if (position < input.chars.length && !input.known[position]) {
+                        return split(machine, position, printed + output.text());
+                    }
+                }
+                if (!machine.step()) {
+                    return leaf(machine, RunResult.ExitReason.TERMINATED, output);
+                }
+                lambda++;
+                if (machine.sameState(saved)) {
+                    return leaf(machine, RunResult.ExitReason.STUCK_IN_LOOP, output);
+                }
+                if (lambda == power) {
+                    saved = new Machine(machine);
+                    power *= 2;
+                    lambda = 0;
+                }
+            }
+        }
+
+        private List<Leaf> leaf(Machine machine, RunResult.ExitReason exitReason, CaptureSink output) {
+            List<Leaf> leaves = new ArrayList<Leaf>(1);
+            leaves.add(new Leaf(input, exitReason, printed + output.text(), machine.steps));
+            return leaves;
+        }
+
+        private List<Leaf> split(Machine machine, int position, String printed) {
+            List<Path> paths = new ArrayList<Path>(alphabet.length());
+            for (int i = 0; i < alphabet.length(); i++) {
+                paths.add(new Path(machine, new Partial(input, position, alphabet.charAt(i)), printed));
+            }
+            List<Leaf> leaves = new ArrayList<Leaf>();
+            for (Path path : invokeAll(paths)) {
+                leaves.addAll(path.join());
+            }
+            return leaves;
+        }
+    }
+
+    public static List<Outcome> explore(TimelineEngine engine, Program program, int maxLength, String alphabet) {
+        /**
+         * Runs the program on every input of up to maxLength characters of
+         * the alphabet, with the budget and the integers of the engine.
+         *
+         * @param engine        the engine with the settings of the runs
+         * @param program       the program to run
+         * @param maxLength     the length of the longest input
+         * @param alphabet      the characters the inputs are made of
+         * @return              how the program ends on every input, shortest
+         *                      first and in the order of the alphabet
+         */
+        alphabet = alphabet.chars().distinct()
+            .collect(StringBuilder::new, StringBuilder::appendCodePoint, StringBuilder::append).toString();
+        // Without an alphabet, the empty input is the only one.
+        int longest = alphabet.isEmpty() ? 0 : maxLength;
+        long inputs = 0;
+        for (long count = 1, n = 0; n <= longest; n++, count *= alphabet.length()) {
+            inputs += count;
+            if (inputs > MAX_INPUTS) {
+                throw new RuntimeException("There are more than " + MAX_INPUTS + " inputs of up to " + maxLength + " characters!");
+            }
+        }
+        Budget budget = (engine.budget.maxSteps == Long.MAX_VALUE) ? engine.budget.withSteps(DEFAULT_STEPS) : engine.budget;
+        Explorer explorer = new Explorer(alphabet);
+        List<Outcome> outcomes = new ArrayList<Outcome>((int)inputs);
+        ForkJoinPool pool = new ForkJoinPool();
+        try {
+            for (int n = 0; n <= longest; n++) {
+                Partial input = new Partial(n);
+                Machine start = new Machine(program, input, new CaptureSink());
+                start.limit(budget);
+                start.accumulator.exact = engine.exact;
+                explorer.expand(pool.invoke(explorer.new Path(start, input, "")), n, outcomes);
+            }
+        } finally {
+            pool.shutdown();
+        }
+        return outcomes;
+    }
+
+    private void expand(List<Leaf> leaves, int length, List<Outcome> outcomes) {
+        /**
+         * Lists how every input of a length ends. A run that never picked up
+         * some character covers every input with any character there.
+         *
+         * @param leaves    how the runs of inputs of this length ended
+         * @param length    the length of the inputs
+         * @param outcomes  where to add them, in the order of the alphabet
+         */
+        int count = 1;
+        for (int i = 0; i < length; i++) {
+            count *= alphabet.length();
+        }
+        Outcome[] ordered = new Outcome[count];
+        char[] chars = new char[length];
+        for (Leaf leaf : leaves) {
+            expand(leaf, 0, 0, chars, ordered);
+        }
+        for (Outcome outcome : ordered) {
+            outcomes.add(outcome);
+        }
+    }
+
+    private void expand(Leaf leaf, int position, int index, char[] chars, Outcome[] ordered) {
+        if (position == chars.length) {
+            ordered[index] = new Outcome(new String(chars), leaf.exitReason, leaf.output, leaf.steps);
+            return;
+        }
+        for (int i = 0; i < alphabet.length(); i++) {
+            if (!leaf.input.known[position] || leaf.input.chars[position] == alphabet.charAt(i)) {
+                chars[position] = alphabet.charAt(i);
+                expand(leaf, position + 1, index * alphabet.length() + i, chars, ordered);
+            }
+        }
+    }
+
+    public static String escape(String text) {
+        /**
+         * Writes a string on one line, with backslashes before tabs, line
+         * breaks, null characters and backslashes.
+         */
+        StringBuilder escaped = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '\\': escaped.append("\\\\"); break;
+                case '\t': escaped.append("\\t"); break;
+                case '\n': escaped.append("\\n"); break;
+                case '\r': escaped.append("\\r"); break;
+                case '\0': escaped.append("\\0"); break;
+                default: escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+}
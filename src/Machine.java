@@ -0,0 +1,769 @@
+package src;
+import java.util.Arrays;
+import java.util.List;
+
+public class Machine {
+
+    private static final Operator[] mathOperators = {
+        Operator.ADD, 
+        Operator.SUB,
+        Operator.MULT,
+        Operator.DIV,
+        Operator.POW,
+        Operator.MOD,
+        Operator.NEG
+    };
+    private static final Operator[] estimationOperators = {
+        Operator.ROUND, 
+        Operator.CEIL, 
+        Operator.FLOOR,
+        Operator.TRUNC
+    };
+    private static final Operator[] trigOperators = {
+        Operator.SIN,
+        Operator.COS,
+        Operator.TAN,
+        Operator.CSC,
+        Operator.SEC,
+        Operator.COT
+    };
+    private static final Operator[] bitwise = {
+        Operator.BNOT,
+        Operator.BAND,
+        Operator.BOR,
+        Operator.BXOR,
+        Operator.BLSHIFT,
+        Operator.BRSHIFT,
+        Operator.BRSHIFTPLUS
+    };
+    private static final Operator[] booleanOperators = {
+        Operator.NOT,
+        Operator.AND,
+        Operator.OR
+    };
+    private static final Operator[] concatenation = {
+        Operator.CONCAT,
+        Operator.REPEAT
+    };
+    private static final Operator[] equalityOperators = {
+        Operator.EQUALS,
+        Operator.NOTEQUALS,
+        Operator.LESSTHAN,
+        Operator.LESSTHANEQUALS,
+        Operator.GREATERTHAN,
+        Operator.GREATERTHANEQUALS
+    };
+
+    private static final Value[] lowercaseLetters = values("abcdefghijklmnopqrstuvwxyz".split(""));
+    private static final Value[] uppercaseLetters = values("ABCDEFGHIJKLMNOPQRSTUVWXYZ".split(""));
+    private static final Value[] digits = values("0123456789".split(""));
+    private static final Value[] symbols = values("!\"#$%&'()*+,-./:;<=>?@[\\]^_`{|}~".split(""));
+    private static final Value[] booleans = values("TRUE", "FALSE");
+    private static final Value[] whitespace = values(" ", "\n", "\t");
+
+    private static final Direction[] movement1 = {Direction.LEFT, Direction.DOWN, Direction.RIGHT, Direction.UP};
+    private static final Direction[] movement2 = {Direction.DOWN, Direction.RIGHT, Direction.UP, Direction.LEFT};
+    private static final Direction[] movement3 = {Direction.RIGHT, Direction.UP, Direction.LEFT, Direction.DOWN};
+    private static final Direction[] movement4 = {Direction.UP, Direction.LEFT, Direction.DOWN, Direction.RIGHT};
+
+    private static final Opcode[] infinityCells = {
+        Opcode.BOOLEAN,
+        Opcode.BOOLEAN_OPERATOR,
+        Opcode.CONCATENATION,
+        Opcode.DIGIT,
+        Opcode.EQUALITY_OPERATOR,
+        Opcode.STDIN_INPUT,
+        Opcode.LOWERCASE_LETTER,
+        Opcode.MATH_OPERATOR,
+        Opcode.BITWISE,
+        Opcode.ESTIMATION_OPERATOR,
+        Opcode.SYMBOL,
+        Opcode.TRIG_OPERATOR,
+        Opcode.UPPERCASE_LETTER,
+        Opcode.WHITESPACE,
+        Opcode.MOVEMENT1,
+        Opcode.MOVEMENT2,
+        Opcode.MOVEMENT3,
+        Opcode.MOVEMENT4
+    };
+
+    public final Object pickUp(Opcode opcode, long layer) {
+        /**
+         * Returns what an infinity cell holds on a layer: a value, an
+         * operator, or a direction for the movement cells.
+         * 
+         * @param opcode    the infinity cell
+         * @param layer     the layer the data pointer is on
+         * @return          the item in the infinity cell, or null if it is not one
+         */
+        if (opcode == Opcode.STDIN_INPUT) {
+            return stdinInput.get(remainder(layer, stdinInput.length()));
+        }
+        Object[] table = table(opcode);
+        // We use the remainder operator since layers won't be negative.
+        return (table == null) ? null : table[remainder(layer, table.length)];
+    }
+
+    public static int remainder(long layer, int period) {
+        // Layers only go past an int with a long Stdin Input, and dividing
+        // ints is several times faster than dividing longs.
+        return (layer == (int)layer) ? (int)layer % period : (int)(layer % period);
+    }
+
+    public static Object[] table(Opcode opcode) {
+        /**
+         * Returns everything an infinity cell holds, in layer order. The
+         * Stdin Input can be far too big for a table, so it has none and is
+         * looked up with pickUp().
+         * 
+         * @param opcode    the infinity cell
+         * @return          the items in it, or null if it is not one or it is the Stdin Input
+         */
+        switch (opcode) {
+            case BOOLEAN: return booleans;
+            case BOOLEAN_OPERATOR: return booleanOperators;
+            case CONCATENATION: return concatenation;
+            case DIGIT: return digits;
+            case EQUALITY_OPERATOR: return equalityOperators;
+            case LOWERCASE_LETTER: return lowercaseLetters;
+            case MATH_OPERATOR: return mathOperators;
+            case BITWISE: return bitwise;
+            case ESTIMATION_OPERATOR: return estimationOperators;
+            case SYMBOL: return symbols;
+            case TRIG_OPERATOR: return trigOperators;
+            case UPPERCASE_LETTER: return uppercaseLetters;
+            case WHITESPACE: return whitespace;
+            case MOVEMENT1: return movement1;
+            case MOVEMENT2: return movement2;
+            case MOVEMENT3: return movement3;
+            case MOVEMENT4: return movement4;
+            default: return null;
+        }
+    }
+
+    public static Direction movement(Opcode opcode, int residue) {
+        /**
+         * Returns the direction a movement cell sends the data pointer in,
+         * which only depends on the layer modulo the four directions it holds.
+         *
+         * @param opcode    the movement cell
+         * @param residue   the layer modulo 4
+         * @return          the direction it sends the data pointer in
+         */
+        switch (opcode) {
+            case MOVEMENT1: return movement1[residue];
+            case MOVEMENT2: return movement2[residue];
+            case MOVEMENT3: return movement3[residue];
+            default: return movement4[residue];
+        }
+    }
+
+    public final int period(Opcode opcode) {
+        /**
+         * Returns how many layers it takes for an infinity cell to loop.
+         * 
+         * @param opcode    the infinity cell
+         * @return          the number of items in it, or 1 if it is not one
+         */
+        if (opcode == Opcode.STDIN_INPUT) {
+            return stdinInput.length();
+        }
+        Object[] table = table(opcode);
+        return (table == null) ? 1 : table.length;
+    }
+
+    public static Value[] values(String... texts) {
+        /**
+         * Classifies the items of an infinity cell up front, so picking
+         * one up never has to parse it.
+         * 
+         * @param texts     the items of the infinity cell
+         * @return          the classified items
+         */
+        Value[] values = new Value[texts.length];
+        for (int i = 0; i < texts.length; i++) {
+            values[i] = Value.of(texts[i]);
+        }
+        return values;
+    }
+
+    public static long gcd(long a, long b) {
+        /**
+         * Calculates the Greatest Common Divisor of two natural numbers
+         * with Euclid's algorithm.
+         * 
+         * @param a             natural number
+         * @param b             natural number
+         * @return              the gcd of a and b
+         */
+        while (b != 0) {
+            long r = a % b;
+            a = b;
+            b = r;
+        }
+        return a;
+    }
+
+    public static long lcm(long a, long b) {
+        /**
+         * Calculates the Least Common Multiple between
+         * two numbers. Dividing by the gcd first keeps every step as small
+         * as the result.
+         * 
+         * @param a             natural number
+         * @param b             natural number
+         * @return              the lcm between a and b
+         * @throws              if the lcm does not fit in a long
+         */
+
+        if (a == 0 || b == 0) {
+            return 0;
+        }
+        try {
+            return Math.multiplyExact(a / gcd(a, b), b);
+        } catch (ArithmeticException e) {
+            throw new RuntimeException("The layers never repeat within " + Long.MAX_VALUE + " layers!");
+        }
+    }
+
+    private long getResetLayer() {
+        /**
+         * Resets the layer index if the current layer state is the same as
+         * the initial layer state.
+         * 
+         * @ return          the reset layer based on the lcm of each infinity layer size
+         */
+
+        // Every table but the Stdin Input is fixed, and their lcm is 43680,
+        // so the product with an input of up to Integer.MAX_VALUE
+        // characters always fits in a long.
+
+        List<Integer> infinityCells = Arrays.asList(
+            mathOperators.length,
+            estimationOperators.length,
+            trigOperators.length,
+            lowercaseLetters.length,
+            uppercaseLetters.length,
+            digits.length,
+            symbols.length,
+            bitwise.length,
+            booleanOperators.length,
+            movement1.length,
+            movement2.length,
+            movement3.length,
+            movement4.length,
+            concatenation.length,
+            whitespace.length,
+            booleans.length,
+            equalityOperators.length,
+            stdinInput.length()
+        );
+        return infinityCells.stream().mapToLong(Integer::longValue).reduce(1, Machine::lcm);
+    }
+
+    public final Program program;
+    private final StdinInput stdinInput;
+    public final long resetLayer;
+    public final OutputSink output;
+
+    public int cell;
+    public Direction direction;
+    public long layer;
+    public final Accumulator accumulator;
+    public final DropStore drops;
+    public long steps;
+    public long outputs;
+    // When the data pointer came to this layer, for Flight Recorder.
+    private long layerStarted;
+
+    // The budget of the run. Nothing is checked until the step count
+    // reaches nextCheck, and stopped says why the run was cut short.
+    public long stepLimit = Long.MAX_VALUE;
+    private long deadline;
+    private Budget budget = Budget.UNLIMITED;
+    public long nextCheck = Long.MAX_VALUE;
+    public RunResult.ExitReason stopped;
+
+    // What every infinity cell holds on the current layer, indexed by
+    // opcode, and where each one is in its table. They only change when the
+    // layer does, so picking up an item is a single array load. Only the
+    // infinity cells the program has are kept up to date.
+    private final int[] used;
+    private final Object[][] tables = new Object[Opcode.values().length][];
+    private final int[] periods = new int[Opcode.values().length];
+    private final int[] positions = new int[Opcode.values().length];
+    private final Object[] items = new Object[Opcode.values().length];
+
+    public Machine(Program program, StdinInput stdinInput, OutputSink output) {
+        this.program = program;
+        this.stdinInput = stdinInput;
+        this.output = output;
+        resetLayer = getResetLayer();
+        cell = 0;
+        direction = Direction.RIGHT;
+        layer = 0;
+        accumulator = new Accumulator();
+        drops = new DropStore();
+        steps = 0;
+        outputs = 0;
+        layerStarted = System.nanoTime();
+        used = Arrays.stream(infinityCells).filter(program::uses).mapToInt(Opcode::ordinal).toArray();
+        resolve();
+    }
+
+    public Machine(Machine machine) {
+        this(machine, machine.stdinInput, machine.output);
+    }
+
+    public Machine(Machine machine, OutputSink output) {
+        this(machine, machine.stdinInput, output);
+    }
+
+    public Machine(Machine machine, StdinInput stdinInput, OutputSink output) {
+        /**
+         * Copies the machine, with another input of the same length and
+         * another sink to print to from here on.
+         *
+         * @param machine       the machine to copy
+         * @param stdinInput    the input of the copy
+         * @param output        where the copy prints to
+         */
+        program = machine.program;
+        this.stdinInput = stdinInput;
+        this.output = output;
+        resetLayer = machine.resetLayer;
+        cell = machine.cell;
+        direction = machine.direction;
+        layer = machine.layer;
+        accumulator = new Accumulator(machine.accumulator);
+        drops = new DropStore(machine.drops);
+        steps = machine.steps;
+        outputs = machine.outputs;
+        layerStarted = machine.layerStarted;
+        stepLimit = machine.stepLimit;
+        deadline = machine.deadline;
+        budget = machine.budget;
+        nextCheck = machine.nextCheck;
+        stopped = machine.stopped;
+        used = machine.used;
+        resolve();
+    }
+
+    public boolean sameState(Machine machine) {
+        /**
+         * Checks if the other machine is in exactly the same state, meaning
+         * both will do exactly the same thing from now on. The cheapest
+         * fields are compared first.
+         * 
+         * @param machine       the machine to compare with
+         * @return              whether or not the states are the same
+         */
+        return cell == machine.cell
+            && direction == machine.direction
+            && layer == machine.layer
+            && accumulator.sameState(machine.accumulator)
+            && drops.sameState(machine.drops);
+    }
+
+    public void limit(Budget budget) {
+        /**
+         * Starts the budget of the run. The clock starts now.
+         *
+         * @param budget    the limits of the run
+         */
+        this.budget = budget;
+        stepLimit = budget.maxSteps;
+        deadline = System.nanoTime() + budget.maxNanos;
+        accumulator.sizeLimit = budget.maxSize;
+        nextCheck = nextCheck();
+    }
+
+    public boolean withinBudget() {
+        /**
+         * Checks the budget once the step count reaches nextCheck, and sets
+         * when to check next. Reading the clock and adding up the drops only
+         * happens every Budget.INTERVAL steps. A run on a thread that was
+         * interrupted is cancelled there too, and a live sink gets to write
+         * out what it has held on to for too long.
+         *
+         * @return          false if the run has to stop, with the reason in stopped
+         */
+        if (steps >= stepLimit) {
+            stopped = RunResult.ExitReason.STEP_LIMIT;
+        } else if (accumulator.overBudget || (budget.maxSize != Long.MAX_VALUE && held() > budget.maxSize)) {
+            stopped = RunResult.ExitReason.MEMORY_LIMIT;
+        } else if (budget.maxNanos != Long.MAX_VALUE && System.nanoTime() - deadline >= 0) {
+            stopped = RunResult.ExitReason.TIME_LIMIT;
+        } else if (Thread.currentThread().isInterrupted()) {
+            // Whoever started the run gave up on it, like the daemon does when its client hangs up.
+            stopped = RunResult.ExitReason.CANCELLED;
+        }
+        output.poll();
+        nextCheck = nextCheck();
+        return stopped == null;
+    }
+
+    private long nextCheck() {
+        // Runs without a deadline or a size limit only stop at their step
+        // limit, unless what they print is shown while they run.
+        return (budget.isTimed() || output.isLive()) ? Math.min(stepLimit, steps + Budget.INTERVAL) : stepLimit;
+    }
+
+    public long held() {return accumulator.size() + drops.size();}
+
+    public void moveTo(int cell, Direction direction, long layer) {
+        /**
+         * Puts the data pointer somewhere else, for when compiled code hands
+         * the run back to the interpreter.
+         *
+         * @param cell          the cell to perform next
+         * @param direction     the direction the data pointer came in moving
+         * @param layer         the layer the data pointer is on
+         */
+        this.cell = cell;
+        this.direction = direction;
+        this.layer = layer;
+        resolve();
+    }
+
+    private void resolve() {
+        /**
+         * Looks up what every infinity cell holds on the current layer.
+         */
+        for (int i : used) {
+            tables[i] = table(Opcode.of((byte)i));
+            periods[i] = period(Opcode.of((byte)i));
+            positions[i] = remainder(layer, periods[i]);
+            items[i] = pickUp(Opcode.of((byte)i), layer);
+        }
+    }
+
+    private void nextLayer() {
+        /**
+         * Goes down one layer. Every infinity cell moves on to its next
+         * item, so no remainder has to be taken.
+         */
+        long fromLayer = layer;
+        layer = (layer + 1 == resetLayer) ? 0 : layer + 1;
+        if (TimelineEvents.isLayerChangeEnabled()) {
+            recordLayerChange(fromLayer);
+        }
+        for (int i : used) {
+            int position = positions[i] + 1;
+            if (position == periods[i]) {
+                position = 0;
+            }
+            positions[i] = position;
+            items[i] = (tables[i] != null) ? tables[i][position] : stdinInput.get(position);
+        }
+    }
+
+    private void recordLayerChange(long fromLayer) {
+        long now = System.nanoTime();
+        TimelineEvents.layerChange(fromLayer, layer, steps, now - layerStarted);
+        layerStarted = now;
+    }
+
+    private void push(Value value) {
+        accumulator.push(value);
+        evaluate();
+    }
+
+    private void push(Operator operator) {
+        accumulator.push(operator);
+        evaluate();
+    }
+
+    private void evaluate() {
+        if (accumulator.isAmorphous || !accumulator.evaluate()) {
+            accumulator.amorphousClear();
+            if (accumulator.overBudget) {
+                // Stop after this step instead of at the next check.
+                nextCheck = steps;
+            }
+        }
+    }
+
+    public boolean run() {
+        /**
+         * Runs the program until it terminates or its budget runs out.
+         * Straight lines the data pointer passes often are replayed from
+         * traces instead of stepping through them one cell at a time, and
+         * loops that neither print nor touch the drops or the input are
+         * jumped over in segments. Traces and segments replay evaluations
+         * without running them, so they are left out while Flight Recorder
+         * is recording every time the accumulator becomes AMORPHOUS. A trace
+         * or segment that would go past the next budget check is stepped
+         * through instead, so step limits are exact.
+         *
+         * @return          true if the program terminated, false if it was stopped
+         */
+        TraceCache traces = TimelineEvents.isAmorphousEnabled() ? null : new TraceCache();
+        SegmentCache segments = (traces == null) ? null : new SegmentCache();
+        for (;;) {
+            if (steps >= nextCheck && !withinBudget()) {
+                return false;
+            }
+            Trace trace = (traces == null) ? null : traces.lookup(this);
+            if (trace != null && trace.length <= nextCheck - steps) {
+                run(trace);
+                if (accumulator.overBudget) {
+                    nextCheck = steps;
+                }
+            } else {
+                // Step until the end of the straight line, or until it is long enough to be a trace on its own.
+                for (int i = 0; i < Trace.MAX_LENGTH && steps < nextCheck && !Trace.endsAt(program.opcode(cell)); i++) {
+                    step();
+                }
+            }
+            if (steps < nextCheck && Trace.endsAt(program.opcode(cell))) {
+                if (segments != null && Segment.startsAt(program.opcode(cell)) && leap(segments, traces)) {
+                    continue;
+                }
+                if (!step()) {
+                    return true;
+                }
+            }
+        }
+    }
+
+    private boolean leap(SegmentCache segments, TraceCache traces) {
+        /**
+         * Jumps over the segment that starts where the data pointer is, or
+         * records one if the place is hot.
+         *
+         * @param segments      the segments of the run
+         * @param traces        the traces of the run
+         * @return              whether or not the machine moved
+         */
+        Segment segment = segments.lookup(this);
+        if (segment != null) {
+            if (segment.steps > nextCheck - steps) {
+                return false;
+            }
+            run(segment);
+            return true;
+        }
+        if (!segments.isHot() || accumulator.size() > Segment.MAX_ENTRY) {
+            return false;
+        }
+        int startCell = cell;
+        Direction startDirection = direction;
+        Accumulator entry = new Accumulator(accumulator);
+        long from = layer;
+        long start = steps;
+        long end = Math.min(nextCheck, steps + Segment.MAX_STEPS);
+        // The infinity cells stepped through, and the lcm of the periods of the traces and segments run on the way.
+        long passed = 0;
+        int period = 1;
+        int advances = 0;
+        do {
+            Opcode opcode = program.opcode(cell);
+            if (!Trace.endsAt(opcode)) {
+                Trace trace = traces.lookup(this);
+                if (trace != null && trace.length <= end - steps) {
+                    if (!trace.pure) {
+                        break;
+                    }
+                    period = (int)lcm(period, trace.period);
+                    advances += trace.advances;
+                    run(trace);
+                    if (accumulator.overBudget) {
+                        nextCheck = steps;
+                    }
+                    continue;
+                }
+                for (int i = 0; i < Trace.MAX_LENGTH && steps < end && !Trace.endsAt(opcode) && !Segment.endsAt(opcode); i++) {
+                    passed |= 1L << opcode.ordinal();
+                    if (opcode == Opcode.NEXT_LAYER) {
+                        advances++;
+                    }
+                    step();
+                    opcode = program.opcode(cell);
+                }
+                continue;
+            }
+            // Segments recorded before make up longer ones, so a loop in a loop is jumped over in one go.
+            Segment inner = (steps > start && Segment.startsAt(opcode)) ? segments.lookup(this) : null;
+            if (inner != null && inner.steps <= end - steps) {
+                period = (int)lcm(period, inner.period);
+                advances += inner.advances;
+                run(inner);
+                continue;
+            }
+            step();
+        } while (steps < end && !Segment.endsAt(program.opcode(cell)) && !accumulator.overBudget);
+        if (!accumulator.overBudget && steps > start) {
+            // Only the infinity cells passed on the way decide which layers look the same to it.
+            for (Opcode opcode : infinityCells) {
+                if ((passed & (1L << opcode.ordinal())) != 0) {
+                    period = (int)lcm(period, period(opcode));
+                }
+            }
+            segments.add(new Segment(startCell, startDirection, period, remainder(from, period), entry, cell, direction,
+                advances, (int)(steps - start), new Accumulator(accumulator)));
+        }
+        return steps > start;
+    }
+
+    private void run(Segment segment) {
+        /**
+         * Jumps to where the segment comes out, the way stepping through it
+         * would have: nothing is printed and no drop is touched on the way,
+         * so only the accumulator and the layer change.
+         *
+         * @param segment   the segment that starts where the data pointer is
+         */
+        accumulator.set(segment.result);
+        drops.advance(segment.advances);
+        long fromLayer = layer;
+        if (segment.advances != 0) {
+            layer += segment.advances;
+            if (layer >= resetLayer) {
+                layer %= resetLayer;
+            }
+            resolve();
+        }
+        cell = segment.exitCell;
+        direction = segment.exitDirection;
+        steps += segment.steps;
+        if (segment.advances != 0 && TimelineEvents.isLayerChangeEnabled()) {
+            recordLayerChange(fromLayer);
+        }
+    }
+
+    private void run(Trace trace) {
+        /**
+         * Does everything the trace does in one go. The accumulator only
+         * needs to go through the trace item by item until it is cleared;
+         * from there, and from an empty accumulator, the trace always ends
+         * up the same.
+         * 
+         * @param trace     the trace that starts where the data pointer is
+         */
+        if (accumulator.isEmpty()) {
+            if (!trace.output.isEmpty()) {
+                output.print(trace.output);
+            }
+            accumulator.set(trace.result);
+        } else {
+            StringBuilder printed = new StringBuilder();
+            trace.perform(0, Math.min(trace.firstClear + 1, trace.size()), accumulator, printed);
+            if (trace.firstClear < trace.size()) {
+                printed.append(trace.tailOutput);
+                accumulator.set(trace.tailResult);
+            }
+            if (printed.length() > 0) {
+                output.print(printed.toString());
+            }
+        }
+        outputs += trace.prints();
+        drops.advance(trace.advances);
+        long fromLayer = layer;
+        if (trace.advances != 0) {
+            layer += trace.advances;
+            if (layer >= resetLayer) {
+                layer %= resetLayer;
+            }
+            resolve();
+        }
+        cell = trace.exitCell;
+        direction = trace.exitDirection;
+        steps += trace.length;
+        if (trace.advances != 0 && TimelineEvents.isLayerChangeEnabled()) {
+            recordLayerChange(fromLayer);
+        }
+    }
+
+    public boolean step() {
+        /**
+         * Performs the cell the data pointer is on and then moves. Only cells
+         * that feed the accumulator need it evaluated afterwards; every other
+         * cell leaves the already evaluated accumulator as it was.
+         * 
+         * @return          false if the program terminated
+         */
+        Opcode opcode = program.opcode(cell);
+        steps++;
+        switch(opcode) {
+            case COMMENT:
+                break;
+            case BOOLEAN:
+            case DIGIT:
+            case STDIN_INPUT:
+            case LOWERCASE_LETTER:
+            case SYMBOL:
+            case UPPERCASE_LETTER:
+            case WHITESPACE:
+                push((Value)items[opcode.ordinal()]);
+                break;
+            case BOOLEAN_OPERATOR:
+            case CONCATENATION:
+            case EQUALITY_OPERATOR:
+            case MATH_OPERATOR:
+            case BITWISE:
+            case ESTIMATION_OPERATOR:
+            case TRIG_OPERATOR:
+                push((Operator)items[opcode.ordinal()]);
+                break;
+            case MOVEMENT1:
+            case MOVEMENT2:
+            case MOVEMENT3:
+            case MOVEMENT4:
+                direction = (Direction)items[opcode.ordinal()];
+                break;
+            case TURN_CLOCKWISE:
+                direction = direction.turnClockwise();
+                break;
+            case TURN_COUNTERCLOCKWISE:
+                direction = direction.turnCounterclockwise();
+                break;
+            case TURN_CLOCKWISE_IF_TRUE:
+                if (accumulator.isTrue()) {
+                    direction = direction.turnClockwise();
+                }
+                break;
+            case TURN_COUNTERCLOCKWISE_IF_TRUE:
+                if (accumulator.isTrue()) {
+                    direction = direction.turnCounterclockwise();
+                }
+                break;
+            case NEXT_LAYER:
+                nextLayer();
+                drops.advance();
+                break;
+            case HOP:
+                cell = program.next(cell, direction);
+                break;
+            case STORAGE0:
+            case STORAGE1:
+            case STORAGE2:
+            case STORAGE3:
+            case STORAGE4:
+            case STORAGE5:
+            case STORAGE6:
+            case STORAGE7:
+            case STORAGE8:
+            case STORAGE9:
+                drops.store(cell, opcode.symbol - '0', accumulator);
+                evaluate();
+                break;
+            case CLEAR:
+                accumulator.clear();
+                break;
+            case PRINT_AND_CLEAR:
+                accumulator.print(output);
+                accumulator.clear();
+                outputs++;
+                break;
+            case PRINT:
+                accumulator.print(output);
+                outputs++;
+                break;
+            case TERMINATE:
+                return false;
+        }
+        cell = program.next(cell, direction);
+        return true;
+    }
+}
@@ -0,0 +1,71 @@
+package src;
+public enum Opcode {
+    COMMENT(' '),
+    BOOLEAN('A'),
+    BOOLEAN_OPERATOR('B'),
+    CONCATENATION('C'),
+    DIGIT('D'),
+    EQUALITY_OPERATOR('E'),
+    STDIN_INPUT('I'),
+    LOWERCASE_LETTER('L'),
+    MATH_OPERATOR('M'),
+    BITWISE('N'),
+    ESTIMATION_OPERATOR('R'),
+    SYMBOL('S'),
+    TRIG_OPERATOR('T'),
+    UPPERCASE_LETTER('U'),
+    WHITESPACE('W'),
+    MOVEMENT1('a'),
+    MOVEMENT2('b'),
+    MOVEMENT3('c'),
+    MOVEMENT4('d'),
+    TURN_CLOCKWISE('>'),
+    TURN_COUNTERCLOCKWISE('<'),
+    TURN_CLOCKWISE_IF_TRUE(')'),
+    TURN_COUNTERCLOCKWISE_IF_TRUE('('),
+    NEXT_LAYER('@'),
+    HOP('#'),
+    STORAGE0('0'),
+    STORAGE1('1'),
+    STORAGE2('2'),
+    STORAGE3('3'),
+    STORAGE4('4'),
+    STORAGE5('5'),
+    STORAGE6('6'),
+    STORAGE7('7'),
+    STORAGE8('8'),
+    STORAGE9('9'),
+    CLEAR('?'),
+    PRINT_AND_CLEAR('.'),
+    PRINT(','),
+    TERMINATE('X');
+
+    public final char symbol;
+
+    private static final Opcode[] VALUES = values();
+    private static final Opcode[] BY_SYMBOL = new Opcode[128];
+
+    static {
+        for (Opcode opcode : VALUES) {
+            BY_SYMBOL[opcode.symbol] = opcode;
+        }
+    }
+
+    private Opcode(char symbol) {
+        this.symbol = symbol;
+    }
+
+    public static Opcode decode(char c) {
+        /**
+         * Returns the opcode of a character in the timeline code. Any
+         * character that is not a cell is a comment.
+         * 
+         * @param c         the character in the code
+         * @return          the opcode of that character
+         */
+        Opcode opcode = (c < BY_SYMBOL.length) ? BY_SYMBOL[c] : null;
+        return (opcode == null) ? COMMENT : opcode;
+    }
+
+    public static Opcode of(byte code) {return VALUES[code];}
+}
@@ -0,0 +1,41 @@
+package src;
+public interface OutputSink {
+    // Where a run prints to. Each run gets its own sink, so runs on
+    // different threads never share output. Sinks may hold on to output
+    // until flush(), which the engine calls when a run ends.
+
+    public void print(String text);
+
+    public default void flush() {}
+
+    public default boolean isLive() {
+        /**
+         * Checks if the sink shows output while the run goes on, so the run
+         * has to poll() it every now and then, even without a budget.
+         */
+        return false;
+    }
+
+    public default void poll() {}
+
+    public default void flushWithin(long patience) {
+        /**
+         * Writes out what the sink holds from another thread, like a shutdown
+         * hook, while the run may still be printing to it.
+         *
+         * @param patience      how long to wait for the run to do it, in nanoseconds
+         */
+        flush();
+    }
+
+    public static OutputSink standardOutput() {
+        /**
+         * Returns a buffered sink for whatever System.out is right now. It
+         * writes out what it holds once it has waited BufferedSink.DELAY,
+         * so a long run shows its output as it goes.
+         *
+         * @return          a new sink that prints to System.out
+         */
+        return new BufferedSink(System.out, System.out.charset(), BufferedSink.THRESHOLD, BufferedSink.DELAY);
+    }
+}
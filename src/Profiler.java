@@ -0,0 +1,183 @@
+package src;
+import java.util.Arrays;
+
+public class Profiler {
+    // Shades of the heatmap, from cells passed once to the hottest cell.
+    private static final String SHADES = ".:-=+*#%@";
+
+    private final Program program;
+    public final long[] cellHits;
+    public final long[] stateHits;
+    public final long[] opcodeHits = new long[Opcode.values().length];
+    public long evaluations;
+    public long amorphous;
+    public long layerTransitions;
+    public long layerWraps;
+    public long deepestLayer;
+    public long steps;
+    private long started;
+    public long elapsed;
+
+    public Profiler(Program program) {
+        this.program = program;
+        cellHits = new long[program.size()];
+        stateHits = new long[program.size() * 4];
+    }
+
+    public void start() {started = System.nanoTime();}
+    public void stop() {elapsed = System.nanoTime() - started;}
+
+    public void before(Machine machine) {
+        /**
+         * Counts the cell the data pointer is about to perform, and the
+         * direction it came in from.
+         *
+         * @param machine   the machine about to take a step
+         */
+        steps++;
+        cellHits[machine.cell]++;
+        stateHits[machine.cell * 4 + machine.direction.ordinal()]++;
+        opcodeHits[program.opcode(machine.cell).ordinal()]++;
+    }
+
+    public void after(Machine machine, Opcode opcode, long layer) {
+        /**
+         * Counts what the step did to the accumulator and the layer. Only
+         * cells that feed the accumulator evaluate it, and it ends up
+         * amorphous exactly when the evaluation failed.
+         *
+         * @param machine   the machine that just took a step
+         * @param opcode    the cell it performed
+         * @param layer     the layer it was on before the step
+         */
+        if (feeds(opcode)) {
+            evaluations++;
+            if (machine.accumulator.isAmorphous) {
+                amorphous++;
+            }
+        }
+        if (machine.layer != layer) {
+            layerTransitions++;
+            if (machine.layer == 0) {
+                layerWraps++;
+            }
+            deepestLayer = Math.max(deepestLayer, machine.layer);
+        }
+    }
+
+    private static boolean feeds(Opcode opcode) {
+        switch (opcode) {
+            case COMMENT:
+            case MOVEMENT1:
+            case MOVEMENT2:
+            case MOVEMENT3:
+            case MOVEMENT4:
+            case TURN_CLOCKWISE:
+            case TURN_COUNTERCLOCKWISE:
+            case TURN_CLOCKWISE_IF_TRUE:
+            case TURN_COUNTERCLOCKWISE_IF_TRUE:
+            case NEXT_LAYER:
+            case HOP:
+            case CLEAR:
+            case PRINT_AND_CLEAR:
+            case PRINT:
+            case TERMINATE:
+                return false;
+            default:
+                return true;
+        }
+    }
+
+    public double stepsPerSecond() {return (elapsed == 0) ? 0 : steps * 1e9 / elapsed;}
+
+    public String toJson() {
+        /**
+         * Exports the counters. Cells that were never passed are left out,
+         * and the rest are listed hottest first.
+         *
+         * @return          the counters as a JSON object
+         */
+        StringBuilder json = new StringBuilder();
+        json.append("{\n");
+        json.append("  \"rows\": ").append(program.rows).append(",\n");
+        json.append("  \"cols\": ").append(program.cols).append(",\n");
+        json.append("  \"steps\": ").append(steps).append(",\n");
+        json.append("  \"seconds\": ").append(elapsed / 1e9).append(",\n");
+        json.append("  \"stepsPerSecond\": ").append(Math.round(stepsPerSecond())).append(",\n");
+        json.append("  \"evaluations\": {\"ok\": ").append(evaluations - amorphous)
+            .append(", \"amorphous\": ").append(amorphous).append("},\n");
+        json.append("  \"layers\": {\"transitions\": ").append(layerTransitions)
+            .append(", \"wraps\": ").append(layerWraps)
+            .append(", \"deepest\": ").append(deepestLayer).append("},\n");
+
+        json.append("  \"opcodes\": {");
+        String separator = "\n";
+        for (Opcode opcode : Opcode.values()) {
+            if (opcodeHits[opcode.ordinal()] != 0) {
+                json.append(separator).append("    \"").append(opcode.name()).append("\": ").append(opcodeHits[opcode.ordinal()]);
+                separator = ",\n";
+            }
+        }
+        json.append("\n  },\n");
+
+        json.append("  \"cells\": [");
+        separator = "\n";
+        Integer[] cells = new Integer[program.size()];
+        for (int i = 0; i < cells.length; i++) {
+            cells[i] = i;
+        }
+        Arrays.sort(cells, (a, b) -> Long.compare(cellHits[b], cellHits[a]));
+        for (int cell : cells) {
+            if (cellHits[cell] == 0) {
+                break;
+            }
+            Point point = program.locate(cell);
+            json.append(separator).append("    {\"row\": ").append(point.r).append(", \"col\": ").append(point.c)
+                .append(", \"opcode\": \"").append(program.opcode(cell).name()).append("\"")
+                .append(", \"hits\": ").append(cellHits[cell]).append(", \"directions\": {");
+            String inner = "";
+            for (Direction direction : Direction.values()) {
+                long hits = stateHits[cell * 4 + direction.ordinal()];
+                if (hits != 0) {
+                    json.append(inner).append("\"").append(direction.name()).append("\": ").append(hits);
+                    inner = ", ";
+                }
+            }
+            json.append("}}");
+            separator = ",\n";
+        }
+        json.append("\n  ]\n");
+        json.append("}\n");
+        return json.toString();
+    }
+
+    public String heatmap() {
+        /**
+         * Draws the grid with every cell shaded by how often the data
+         * pointer passed it, on a log scale so cold paths still show up
+         * next to the hot loop. Cells that were never passed are blank.
+         *
+         * @return          the heatmap, one line per row
+         */
+        long max = 1;
+        for (long hits : cellHits) {
+            max = Math.max(max, hits);
+        }
+        StringBuilder map = new StringBuilder();
+        for (int r = 0; r < program.rows; r++) {
+            for (int c = 0; c < program.cols; c++) {
+                long hits = cellHits[r * program.cols + c];
+                if (hits == 0) {
+                    map.append(' ');
+                } else {
+                    int shade = (max == 1) ? 0 : (int)(Math.log(hits) / Math.log(max) * (SHADES.length() - 1));
+                    map.append(SHADES.charAt(shade));
+                }
+            }
+            map.append('\n');
+        }
+        map.append("scale: '").append(SHADES.charAt(0)).append("' = 1 hit, '")
+            .append(SHADES.charAt(SHADES.length() - 1)).append("' = ").append(max).append(" hits\n");
+        return map.toString();
+    }
+}
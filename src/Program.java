@@ -0,0 +1,516 @@
+package src;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.BitSet;
+
+public class Program {
+    // Every cell is one byte: the opcode in the low bits, and whether the
+    // cell is in the first or the last column in the top two, so the data
+    // pointer wraps around the edges without dividing by the width.
+    private static final int CODE = 0x3f;
+    private static final int FIRST = 0x40;
+    private static final int LAST = 0x80;
+
+    // Programs where most of the board is comments are kept in tiles, and a
+    // tile without a single cell in it is never allocated.
+    private static final int TILE_BITS = 12;
+    private static final int TILE = 1 << TILE_BITS;
+
+    // How many bytes of the timeline code are decoded at a time.
+    private static final int CHUNK = 1 << 16;
+
+    // The opcode of every ASCII character.
+    private static final byte[] CODES = new byte[128];
+
+    static {
+        for (char c = 0; c < CODES.length; c++) {
+            CODES[c] = (byte)Opcode.decode(c).ordinal();
+        }
+    }
+
+    // Boards saved by save() start with this, and have to be saved again
+    // whenever the way cells or the analysis after them are kept changes.
+    private static final int IMAGE = 0x544c4302;
+    private static final int HEADER = 24;
+
+    // The data pointer is tracked as cell * 4 + direction, which has to fit an int.
+    public static final int MAX_SIZE = Integer.MAX_VALUE >> 2;
+
+    public final int rows;
+    public final int cols;
+    private final int size;
+    private final byte[] ops;
+    private final byte[][] tiles;
+    private final boolean[] uses = new boolean[Opcode.values().length];
+    // The program compiled to bytecode, made by the first run that asks for
+    // it and shared by every run after that.
+    private CompiledProgram compiled;
+    private boolean isCompiled = false;
+    // What the data pointer can reach, worked out the first time it is
+    // asked for, or saved along with the board.
+    private ControlFlow flow;
+
+    private Program(int rows, int cols, byte[] ops, byte[][] tiles, long seen) {
+        this.rows = rows;
+        this.cols = cols;
+        this.size = rows * cols;
+        this.ops = ops;
+        this.tiles = tiles;
+        for (int code = 0; code < uses.length; code++) {
+            uses[code] = (seen & (1L << code)) != 0;
+        }
+    }
+
+    public static Program decode(String source) {
+        /**
+         * Decodes the timeline code. The board is as wide as the longest
+         * line, and the rest of every shorter line is comments.
+         *
+         * @param source    the timeline code
+         * @return          the decoded program
+         */
+        return decode(ByteBuffer.wrap(source.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    public static Program load(FileChannel channel) {
+        /**
+         * Decodes the timeline code in a file without reading it onto the
+         * heap first.
+         *
+         * @param channel   the timeline code in UTF-8
+         * @return          the decoded program
+         */
+        return decode(source(channel));
+    }
+
+    public static ByteBuffer source(FileChannel channel) {
+        /**
+         * Takes the timeline code in a file. A regular file is mapped into
+         * memory, and anything that can't be mapped, like a pipe, is read
+         * in whole instead.
+         *
+         * @param channel   the timeline code in UTF-8
+         * @return          the timeline code
+         */
+        try {
+            long length = channel.size();
+            if (length > Integer.MAX_VALUE) {
+                throw new RuntimeException("Timeline code is too big! It can't be more than " + Integer.MAX_VALUE + " bytes.");
+            }
+            // A pipe has no size, so there is nothing to map.
+            if (length > 0) {
+                try {
+                    return channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+                } catch (IOException | UnsupportedOperationException e) {
+                    // Read in whole below.
+                }
+            }
+            ByteBuffer source = ByteBuffer.allocate(1 << 16);
+            while (channel.read(source) >= 0) {
+                if (!source.hasRemaining()) {
+                    if (source.capacity() == Integer.MAX_VALUE) {
+                        throw new RuntimeException("Timeline code is too big! It can't be more than " + Integer.MAX_VALUE + " bytes.");
+                    }
+                    ByteBuffer bigger = ByteBuffer.allocate((int)Math.min(source.capacity() * 2L, Integer.MAX_VALUE));
+                    source = bigger.put(source.flip());
+                }
+            }
+            return source.flip();
+        } catch (IOException e) {
+            throw new RuntimeException("Cannot read the timeline code!", e);
+        }
+    }
+
+    public static Program decode(ByteBuffer source) {
+        /**
+         * Decodes the timeline code straight from its UTF-8 bytes. The first
+         * pass finds where every line starts and how wide the board is, and
+         * the second places each cell on it. Both copy the bytes out a chunk
+         * at a time, which is much faster than reading a mapped buffer one
+         * byte at a time. Lines end like they do for BufferedReader, and
+         * every character past ASCII is a comment that takes up one column,
+         * or two if it is outside the BMP.
+         *
+         * @param source    the timeline code in UTF-8
+         * @return          the decoded program
+         */
+        byte[] chunk = new byte[CHUNK];
+        int first = source.position();
+        int end = source.limit();
+        int[] starts = new int[64];
+        int[] ends = new int[64];
+        // Lines with anything past ASCII in them, which take the slow way.
+        BitSet foreign = new BitSet();
+        int rows = 0;
+        int cols = 0;
+        long covered = 0;
+        int start = first;
+        int high = 0;
+        for (int from = first; from < end; from += CHUNK) {
+            int length = Math.min(CHUNK, end - from);
+            source.get(from, chunk, 0, length);
+            for (int j = 0; j < length; j++) {
+                int next = lineEnd(chunk, j, length);
+                high |= or(chunk, j, next);
+                if (next == length) {
+                    break;
+                }
+                j = next;
+                byte b = chunk[j];
+                int at = from + j;
+                if (b == '\n' && at == start && at > first && source.get(at - 1) == '\r') {
+                    start = at + 1;
+                    continue;
+                }
+                if (rows == starts.length) {
+                    starts = Arrays.copyOf(starts, rows * 2);
+                    ends = Arrays.copyOf(ends, rows * 2);
+                }
+                if (high < 0) {
+                    foreign.set(rows);
+                }
+                starts[rows] = start;
+                ends[rows] = at;
+                int width = width(source, start, at, high < 0);
+                cols = Math.max(cols, width);
+                covered += width;
+                rows++;
+                start = at + 1;
+                high = 0;
+            }
+        }
+        if (start < end) {
+            if (rows == starts.length) {
+                starts = Arrays.copyOf(starts, rows + 1);
+                ends = Arrays.copyOf(ends, rows + 1);
+            }
+            if (high < 0) {
+                foreign.set(rows);
+            }
+            starts[rows] = start;
+            ends[rows] = end;
+            int width = width(source, start, end, high < 0);
+            cols = Math.max(cols, width);
+            covered += width;
+            rows++;
+        }
+        if ((long)rows * cols == 0) {
+            throw new RuntimeException("Timeline code is empty! There is nowhere to start!");
+        }
+        if ((long)rows * cols > MAX_SIZE) {
+            throw new RuntimeException("Timeline code is too big! It can't have more than " + MAX_SIZE + " cells.");
+        }
+
+        int size = rows * cols;
+        // The board is as wide as its longest line. When the lines cover
+        // less than half of it, most of it is the padding after shorter
+        // lines, so it is kept in tiles.
+        byte[] ops = (covered * 2 < size) ? null : new byte[size];
+        byte[][] tiles = (ops != null) ? null : new byte[(size + TILE - 1) >> TILE_BITS][];
+        long seen = (covered < size) ? 1 : 0;
+        for (int r = 0; r < rows; r++) {
+            int cell = r * cols;
+            if (foreign.get(r)) {
+                for (int i = starts[r]; i < ends[r]; i++) {
+                    byte b = source.get(i);
+                    if (b < 0) {
+                        seen |= 1;
+                        cell += columns(b);
+                        continue;
+                    }
+                    seen |= 1L << CODES[b];
+                    if (ops != null) {
+                        ops[cell] = CODES[b];
+                    } else if (CODES[b] != 0) {
+                        tile(tiles, cell)[cell & (TILE - 1)] = CODES[b];
+                    }
+                    cell++;
+                }
+                continue;
+            }
+            // Every byte is a cell, so the line is decoded a chunk at a time.
+            for (int from = starts[r]; from < ends[r]; ) {
+                int at = (ops != null) ? cell : cell & (TILE - 1);
+                int length = Math.min(CHUNK, ends[r] - from);
+                if (ops == null) {
+                    length = Math.min(length, TILE - at);
+                }
+                source.get(from, chunk, 0, length);
+                byte[] target = (ops != null) ? ops : tiles[cell >> TILE_BITS];
+                if (target == null && hasCells(chunk, length)) {
+                    target = tile(tiles, cell);
+                }
+                seen |= (target == null) ? 1 : translate(chunk, length, target, at);
+                from += length;
+                cell += length;
+            }
+        }
+        for (int r = 0; r < rows; r++) {
+            mark(ops, tiles, r * cols, FIRST);
+            mark(ops, tiles, r * cols + cols - 1, LAST);
+        }
+        return new Program(rows, cols, ops, tiles, seen);
+    }
+
+    public void save(WritableByteChannel channel) throws IOException {
+        /**
+         * Writes the decoded board out the way restore() reads it back: a
+         * header, then every cell, or only the tiles that were allocated,
+         * and then the reachable states if the program was analyzed.
+         *
+         * @param channel   where to write the board
+         */
+        long seen = 0;
+        for (int code = 0; code < uses.length; code++) {
+            seen |= uses[code] ? 1L << code : 0;
+        }
+        int count = 0;
+        for (int t = 0; ops == null && t < tiles.length; t++) {
+            count += (tiles[t] != null) ? 1 : 0;
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER + 4 * count)
+            .putInt(IMAGE).putInt(rows).putInt(cols).putLong(seen).putInt((ops != null) ? -1 : count);
+        for (int t = 0; ops == null && t < tiles.length; t++) {
+            if (tiles[t] != null) {
+                header.putInt(t);
+            }
+        }
+        write(channel, header.flip());
+        if (ops != null) {
+            write(channel, ByteBuffer.wrap(ops));
+        }
+        for (int t = 0; ops == null && t < tiles.length; t++) {
+            if (tiles[t] != null) {
+                write(channel, ByteBuffer.wrap(tiles[t]));
+            }
+        }
+        ControlFlow analyzed;
+        synchronized (this) {
+            analyzed = flow;
+        }
+        if (analyzed != null) {
+            write(channel, analyzed.image());
+        }
+    }
+
+    private static void write(WritableByteChannel channel, ByteBuffer bytes) throws IOException {
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+    }
+
+    public static Program restore(ByteBuffer image) {
+        /**
+         * Reads a board written by save() back in bulk, without decoding a
+         * single line.
+         *
+         * @param image     what save() wrote
+         * @return          the program, or null if the image is not one
+         */
+        if (image.limit() < HEADER || image.getInt(0) != IMAGE) {
+            return null;
+        }
+        int rows = image.getInt(4);
+        int cols = image.getInt(8);
+        long seen = image.getLong(12);
+        int count = image.getInt(20);
+        if (rows <= 0 || cols <= 0 || (long)rows * cols > MAX_SIZE) {
+            return null;
+        }
+        int size = rows * cols;
+        if (count < 0) {
+            if (image.limit() < HEADER + (long)size) {
+                return null;
+            }
+            byte[] ops = new byte[size];
+            image.get(HEADER, ops);
+            return analyzed(new Program(rows, cols, ops, null, seen), image, HEADER + size);
+        }
+        byte[][] tiles = new byte[(size + TILE - 1) >> TILE_BITS][];
+        if (count > tiles.length || image.limit() < HEADER + 4L * count + (long)count * TILE) {
+            return null;
+        }
+        int at = HEADER + 4 * count;
+        for (int i = 0; i < count; i++, at += TILE) {
+            int t = image.getInt(HEADER + 4 * i);
+            if (t < 0 || t >= tiles.length || tiles[t] != null) {
+                return null;
+            }
+            tiles[t] = new byte[TILE];
+            image.get(at, tiles[t]);
+        }
+        return analyzed(new Program(rows, cols, null, tiles, seen), image, at);
+    }
+
+    private static Program analyzed(Program program, ByteBuffer image, int end) {
+        /**
+         * Reads back the reachable states saved after the board, if there
+         * are any.
+         *
+         * @param program   the board read back
+         * @param image     what save() wrote
+         * @param end       where the board ends in it
+         * @return          the program, or null if what follows the board
+         *                  is not its analysis
+         */
+        if (image.limit() == end) {
+            return program;
+        }
+        program.flow = ControlFlow.restore(program, image, end);
+        return (program.flow != null) ? program : null;
+    }
+
+    private static byte[] tile(byte[][] tiles, int cell) {
+        if (tiles[cell >> TILE_BITS] == null) {
+            tiles[cell >> TILE_BITS] = new byte[TILE];
+        }
+        return tiles[cell >> TILE_BITS];
+    }
+
+    // The loops every byte goes through are methods of their own, so the
+    // JIT compiles them on their own rather than the whole of decode().
+    private static int lineEnd(byte[] chunk, int from, int to) {
+        for (int j = from; j < to; j++) {
+            if (chunk[j] == '\n' || chunk[j] == '\r') {
+                return j;
+            }
+        }
+        return to;
+    }
+
+    private static int or(byte[] chunk, int from, int to) {
+        int high = 0;
+        for (int j = from; j < to; j++) {
+            high |= chunk[j];
+        }
+        return high;
+    }
+
+    private static boolean hasCells(byte[] chunk, int length) {
+        int any = 0;
+        for (int j = 0; j < length; j++) {
+            any |= CODES[chunk[j]];
+        }
+        return any != 0;
+    }
+
+    private static long translate(byte[] chunk, int length, byte[] target, int at) {
+        /**
+         * Decodes a chunk of ASCII into cells.
+         *
+         * @return          the opcodes in it, one bit each
+         */
+        long seen = 0;
+        for (int j = 0; j < length; j++) {
+            target[at + j] = CODES[chunk[j]];
+            seen |= 1L << target[at + j];
+        }
+        return seen;
+    }
+
+    private static int width(ByteBuffer source, int start, int end, boolean foreign) {
+        /**
+         * Counts the columns of a line, which is only more work than its
+         * length when there is something past ASCII in it.
+         */
+        if (!foreign) {
+            return end - start;
+        }
+        int width = 0;
+        for (int i = start; i < end; i++) {
+            width += columns(source.get(i));
+        }
+        return width;
+    }
+
+    private static int columns(byte b) {
+        /**
+         * Counts the columns a byte of UTF-8 starts. A continuation byte
+         * starts none, and the lead byte of a character outside the BMP
+         * starts two, one for each half of its surrogate pair.
+         */
+        if ((b & 0xc0) == 0x80) {
+            return 0;
+        }
+        return ((b & 0xf8) == 0xf0) ? 2 : 1;
+    }
+
+    private static void mark(byte[] ops, byte[][] tiles, int cell, int edge) {
+        byte[] target = (ops != null) ? ops : tiles[cell >> TILE_BITS];
+        int at = (ops != null) ? cell : cell & (TILE - 1);
+        if (target != null) {
+            target[at] = (byte)(target[at] | edge);
+        }
+    }
+
+    private static byte edges(int cell, int cols) {
+        int c = cell % cols;
+        return (byte)(((c == 0) ? FIRST : 0) | ((c == cols - 1) ? LAST : 0));
+    }
+
+    private int op(int cell) {
+        if (ops != null) {
+            return ops[cell];
+        }
+        byte[] tile = tiles[cell >> TILE_BITS];
+        return (tile == null) ? edges(cell, cols) : tile[cell & (TILE - 1)];
+    }
+
+    public int size() {return size;}
+    public Opcode opcode(int cell) {return Opcode.of((byte)(op(cell) & CODE));}
+    public boolean uses(Opcode opcode) {return uses[opcode.ordinal()];}
+
+    public synchronized ControlFlow flow() {
+        /**
+         * Analyzes the program the first time it is asked for.
+         *
+         * @return          what the data pointer can reach
+         * @throws          if the program is too big to analyze
+         */
+        if (flow == null) {
+            flow = ControlFlow.analyze(this);
+        }
+        return flow;
+    }
+
+    public synchronized CompiledProgram compiled() {
+        /**
+         * Compiles the program the first time it is asked for. Runs that ask
+         * while it is being compiled wait for it instead of compiling it too.
+         *
+         * @return          the compiled program, or null if it is too big to compile
+         */
+        if (!isCompiled) {
+            compiled = TimelineCompiler.compile(this);
+            isCompiled = true;
+        }
+        return compiled;
+    }
+
+    public int next(int cell, Direction direction) {
+        /**
+         * Finds the cell the data pointer lands on when it leaves a cell,
+         * wrapping around the edges of the board.
+         *
+         * @param cell      the cell it leaves
+         * @param direction the direction it leaves in
+         * @return          the cell it lands on
+         */
+        switch (direction.ordinal()) {
+            case 0:
+                return (cell < cols) ? cell + size - cols : cell - cols;
+            case 2:
+                return (cell >= size - cols) ? cell - size + cols : cell + cols;
+            case 1:
+                return ((op(cell) & FIRST) != 0) ? cell + cols - 1 : cell - 1;
+            default:
+                return ((op(cell) & LAST) != 0) ? cell - cols + 1 : cell + 1;
+        }
+    }
+
+    public Point locate(int cell) {return new Point(cell / cols, cell % cols);}
+}
@@ -0,0 +1,202 @@
+package src;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+public class ProgramCache {
+    // Decoded programs saved in a directory, one file for every timeline
+    // code, named by the SHA-256 of the code and of the interpreter that
+    // saved it. A program that is loaded again is mapped back in without
+    // being decoded or analyzed, and a new interpreter never reads what an
+    // old one saved.
+    //
+    // Hashing a code of many megabytes takes longer than mapping its
+    // program back in, so a file is also looked up by which file it is,
+    // how long it is and when it was last changed. Only a file that was
+    // changed without any of those changing is hashed again.
+    public static final Path DEFAULT_DIRECTORY = Path.of(System.getProperty("user.home"), ".cache", "timeline");
+    private static final String SUFFIX = ".tlc";
+    private static final String INDEX = ".key";
+
+    private final Path directory;
+
+    public ProgramCache(Path directory) {
+        this.directory = directory;
+    }
+
+    private interface Contents {
+        void write(FileChannel channel) throws IOException;
+    }
+
+    public Program load(FileChannel channel) {
+        return load(channel, null);
+    }
+
+    public Program load(FileChannel channel, Path path) {
+        /**
+         * Finds the program for the timeline code in the cache, or decodes
+         * and analyzes the code and saves the program for next time. A
+         * cache that can't be read or written is only slower.
+         *
+         * @param channel   the timeline code in UTF-8
+         * @param path      the file the channel reads, or null if there is none
+         * @return          the decoded program
+         */
+        String identity = identity(path);
+        if (identity != null) {
+            Program program = restore(indexed(identity));
+            if (program != null) {
+                return program;
+            }
+        }
+        ByteBuffer source = Program.source(channel);
+        String key = key(source);
+        Program program = restore(key);
+        if (program == null) {
+            program = Program.decode(source);
+            if (program.size() <= ControlFlow.MAX_SIZE) {
+                // Saved along with the board, so no run after this analyzes it.
+                program.flow();
+            }
+            save(directory.resolve(key + SUFFIX), program::save);
+        }
+        if (identity != null) {
+            byte[] name = key.getBytes(StandardCharsets.US_ASCII);
+            save(directory.resolve(identity + INDEX), c -> c.write(ByteBuffer.wrap(name)));
+        }
+        return program;
+    }
+
+    private Program restore(String key) {
+        /**
+         * Maps in the program saved under a key.
+         *
+         * @param key       the name of the saved program
+         * @return          the program, or null if it isn't saved or can't be read
+         */
+        if (key == null) {
+            return null;
+        }
+        try (FileChannel image = FileChannel.open(directory.resolve(key + SUFFIX), StandardOpenOption.READ)) {
+            return Program.restore(image.map(FileChannel.MapMode.READ_ONLY, 0, image.size()));
+        } catch (IOException e) {
+            // Not saved yet, or not readable. Either way it is decoded.
+            return null;
+        }
+    }
+
+    private String indexed(String identity) {
+        /**
+         * Finds the key of the code last saved for a file.
+         *
+         * @param identity  the file, its length and when it was last changed
+         * @return          the key, or null if the file was never saved
+         */
+        try {
+            String key = Files.readString(directory.resolve(identity + INDEX), StandardCharsets.US_ASCII);
+            return key.matches("[0-9a-f]{64}") ? key : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private void save(Path file, Contents contents) {
+        /**
+         * Saves a file under a name of its own first and then moves it in
+         * place, so another run never maps half a file.
+         */
+        Path partial = null;
+        try {
+            Files.createDirectories(directory);
+            partial = Files.createTempFile(directory, "partial", SUFFIX);
+            try (FileChannel channel = FileChannel.open(partial, StandardOpenOption.WRITE)) {
+                contents.write(channel);
+            }
+            Files.move(partial, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            // The program is decoded again next time.
+            try {
+                if (partial != null) {
+                    Files.deleteIfExists(partial);
+                }
+            } catch (IOException ignored) {
+                // Nothing more to do about it.
+            }
+        }
+    }
+
+    private static String identity(Path path) {
+        /**
+         * Names a file by which file it is, how long it is and when it was
+         * last changed, along with the interpreter.
+         *
+         * @param path      the file
+         * @return          the name, or null if the file has none
+         */
+        if (path == null) {
+            return null;
+        }
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            if (!attributes.isRegularFile()) {
+                return null;
+            }
+            Object file = (attributes.fileKey() != null) ? attributes.fileKey() : path.toRealPath();
+            MessageDigest digest = sha256();
+            digest.update(Interpreter.VERSION);
+            digest.update((file + "\n" + attributes.size() + "\n" + attributes.lastModifiedTime().toInstant())
+                .getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static String key(ByteBuffer source) {
+        MessageDigest digest = sha256();
+        digest.update(Interpreter.VERSION);
+        digest.update(source.duplicate());
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static class Interpreter {
+        // The SHA-256 of every class that decides what a saved program
+        // holds: how cells are decoded and saved, what the opcodes and the
+        // directions are, and how the program is analyzed. Any change to
+        // one of them puts the programs saved before out of use. Held apart
+        // so it is only worked out by runs that use the cache.
+        static final byte[] VERSION = version(Program.class, Opcode.class, Direction.class, ControlFlow.class);
+
+        private static byte[] version(Class<?>... classes) {
+            MessageDigest digest = sha256();
+            for (Class<?> c : classes) {
+                try (InputStream in = c.getResourceAsStream(c.getSimpleName() + ".class")) {
+                    if (in != null) {
+                        digest.update(in.readAllBytes());
+                    }
+                } catch (IOException e) {
+                    // Falls back on the number each image starts with, which restore() checks.
+                }
+            }
+            return digest.digest();
+        }
+    }
+}
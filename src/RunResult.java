@@ -0,0 +1,33 @@
+package src;
+public class RunResult {
+
+    public static enum ExitReason {
+        TERMINATED,
+        STUCK_IN_LOOP,
+        STEP_LIMIT,
+        TIME_LIMIT,
+        MEMORY_LIMIT,
+        CANCELLED;
+    }
+
+    public final ExitReason exitReason;
+    public final long steps;
+    public final long outputs;
+
+    // Only set when the run was stopped for being stuck in a loop.
+    public final long cycleLength;
+    public final long cycleStart;
+
+    public RunResult(ExitReason exitReason, long steps, long outputs, long cycleLength, long cycleStart) {
+        this.exitReason = exitReason;
+        this.steps = steps;
+        this.outputs = outputs;
+        this.cycleLength = cycleLength;
+        this.cycleStart = cycleStart;
+    }
+
+    @Override
+    public String toString() {
+        return exitReason + " after " + steps + " steps and " + outputs + " outputs";
+    }
+}
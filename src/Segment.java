@@ -0,0 +1,99 @@
+package src;
+
+public class Segment {
+    // Most steps one segment covers. Longer stretches are covered by one
+    // segment after another.
+    public static final int MAX_STEPS = 1 << 16;
+    // Longest accumulator a segment is keyed by, so comparing it with the
+    // accumulator of the machine never copies out a long rope.
+    public static final int MAX_ENTRY = 1 << 12;
+
+    // Segments never pass the Stdin Input, so the items they pass loop
+    // within the 43680 layers the fixed infinity cells take.
+    public final int period;
+    public final int residue;
+    // Where the segment starts. Segments from many places can share a key.
+    public final int startCell;
+    public final Direction startDirection;
+    public final Accumulator entry;
+    public final int exitCell;
+    public final Direction exitDirection;
+    public final int advances;
+    public final int steps;
+    public final Accumulator result;
+    // The next segment from the same place on the same layers, which starts
+    // with another accumulator.
+    Segment next;
+
+    public Segment(int startCell, Direction startDirection, int period, int residue, Accumulator entry, int exitCell, Direction exitDirection, int advances, int steps, Accumulator result) {
+        this.startCell = startCell;
+        this.startDirection = startDirection;
+        this.period = period;
+        this.residue = residue;
+        this.entry = entry;
+        this.exitCell = exitCell;
+        this.exitDirection = exitDirection;
+        this.advances = advances;
+        this.steps = steps;
+        this.result = result;
+    }
+
+    public static boolean startsAt(Opcode opcode) {
+        /**
+         * Checks if a segment can start on the cell. Every loop that ever
+         * ends passes a conditional turn, and that is the only place a trace
+         * can't take the data pointer past.
+         *
+         * @param opcode    the cell
+         * @return          whether or not a segment starts there
+         */
+        return opcode == Opcode.TURN_CLOCKWISE_IF_TRUE || opcode == Opcode.TURN_COUNTERCLOCKWISE_IF_TRUE;
+    }
+
+    public static boolean endsAt(Opcode opcode) {
+        /**
+         * Checks if a segment has to stop in front of the cell, because what
+         * the cell does depends on more than the layer and the accumulator,
+         * or shows outside the machine.
+         *
+         * @param opcode    the cell
+         * @return          whether or not the cell ends a segment
+         */
+        switch (opcode) {
+            case STDIN_INPUT:
+            case STORAGE0:
+            case STORAGE1:
+            case STORAGE2:
+            case STORAGE3:
+            case STORAGE4:
+            case STORAGE5:
+            case STORAGE6:
+            case STORAGE7:
+            case STORAGE8:
+            case STORAGE9:
+            case PRINT:
+            case PRINT_AND_CLEAR:
+            case TERMINATE:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    public boolean matches(Machine machine) {
+        /**
+         * Checks if the segment does the same from where the machine is. It
+         * does when the data pointer is on the cell and going the way the
+         * segment started, every infinity cell it passed is on the same
+         * item, and the accumulator holds exactly the same, since the
+         * conditional turns on the way go by it.
+         *
+         * @param machine   the machine on a cell segments start on
+         * @return          whether or not the segment can be jumped over
+         */
+        return machine.cell == startCell && machine.direction == startDirection
+            && Machine.remainder(machine.layer, period) == residue
+            && machine.accumulator.size() <= MAX_ENTRY
+            && entry.sameState(machine.accumulator);
+    }
+}
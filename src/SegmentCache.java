@@ -0,0 +1,98 @@
+package src;
+import java.util.Arrays;
+import java.util.HashMap;
+
+public class SegmentCache {
+    // A place has to be passed this many times before segments are recorded from it.
+    private static final int HOT = 16;
+    // Segments shorter than this are replayed faster by their traces. A
+    // place that keeps coming out with short ones is given up on.
+    public static final int MIN_STEPS = 64;
+    private static final int TRIAL = 8;
+    private static final int MAX_SEGMENTS = 1 << 16;
+
+    private static class Place {
+        int visits = 0;
+        int count = 0;
+        int skipped = 0;
+        // The periods of the segments from here, which are nearly always the same.
+        int[] periods = new int[0];
+    }
+
+    private final HashMap<Integer, Place> places = new HashMap<Integer, Place>();
+    // Segments by where they start and which layers they start on, each
+    // followed by the ones that start there with other accumulators.
+    private final HashMap<Long, Segment> segments = new HashMap<Long, Segment>();
+    private int total = 0;
+    // The place looked up last, which isHot() is about.
+    private Place last;
+
+    // Periods divide 43680, so a period and a residue take 16 bits each.
+    private static long key(int state, int period, int residue) {return ((long)state << 32) | ((long)period << 16) | residue;}
+
+    public Segment lookup(Machine machine) {
+        /**
+         * Finds the segment that starts where the machine is.
+         *
+         * @param machine   the machine on a cell segments start on
+         * @return          the segment, or null if there is none
+         */
+        int state = state(machine.cell, machine.direction);
+        last = place(state);
+        for (int period : last.periods) {
+            Segment segment = segments.get(key(state, period, Machine.remainder(machine.layer, period)));
+            for (; segment != null; segment = segment.next) {
+                if (segment.matches(machine)) {
+                    return segment;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static int state(int cell, Direction direction) {return cell * 4 + direction.ordinal();}
+
+    private Place place(int state) {
+        Place place = places.get(state);
+        if (place == null) {
+            place = new Place();
+            places.put(state, place);
+        }
+        return place;
+    }
+
+    public boolean isHot() {
+        /**
+         * Checks if a segment should be recorded from the place looked up
+         * last, which is when the data pointer passes it often, it has not
+         * been given up on, and there is room for one.
+         */
+        return ++last.visits >= HOT && !isGivenUp(last) && total < MAX_SEGMENTS;
+    }
+
+    private static boolean isGivenUp(Place place) {return place.skipped >= TRIAL && place.skipped > place.count;}
+
+    public void add(Segment segment) {
+        /**
+         * Keeps a segment recorded from a place, unless it is too short to
+         * be worth jumping over.
+         *
+         * @param segment   the segment
+         */
+        int state = state(segment.startCell, segment.startDirection);
+        Place place = place(state);
+        if (segment.steps < MIN_STEPS) {
+            place.skipped++;
+            return;
+        }
+        if (Arrays.stream(place.periods).noneMatch(period -> period == segment.period)) {
+            place.periods = Arrays.copyOf(place.periods, place.periods.length + 1);
+            place.periods[place.periods.length - 1] = segment.period;
+        }
+        long key = key(state, segment.period, segment.residue);
+        segment.next = segments.get(key);
+        segments.put(key, segment);
+        place.count++;
+        total++;
+    }
+}
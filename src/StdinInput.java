@@ -0,0 +1,143 @@
+package src;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+public abstract class StdinInput {
+    // The Stdin Input infinity cell holds one item for every character of
+    // the input, and a null character after them. Items are only made when
+    // the data pointer gets to their layer, so an input of any size costs
+    // no more than its characters.
+    private static final Value[] LATIN1 = new Value[256];
+
+    static {
+        for (int c = 0; c < LATIN1.length; c++) {
+            LATIN1[c] = Value.of(String.valueOf((char)c));
+        }
+    }
+
+    public abstract int length();
+
+    public abstract Value get(int index);
+
+    protected static Value of(char c) {return (c < LATIN1.length) ? LATIN1[c] : Value.of(String.valueOf(c));}
+
+    private static class Chars extends StdinInput {
+        private final CharSequence text;
+
+        Chars(CharSequence text) {
+            this.text = text;
+        }
+
+        public int length() {return text.length() + 1;}
+        public Value get(int index) {return of((index == text.length()) ? '\0' : text.charAt(index));}
+    }
+
+    private static class Bytes extends StdinInput {
+        private final ByteBuffer bytes;
+
+        Bytes(ByteBuffer bytes) {
+            this.bytes = bytes;
+        }
+
+        public int length() {return bytes.limit() + 1;}
+        public Value get(int index) {return of((index == bytes.limit()) ? '\0' : (char)bytes.get(index));}
+    }
+
+    public static StdinInput of(String text) {
+        /**
+         * Feeds a string to the program, like the command line does with
+         * its arguments.
+         *
+         * @param text      the input
+         * @return          the input, ready for the Stdin Input cell
+         */
+        if (text.length() == Integer.MAX_VALUE) {
+            throw new RuntimeException("Stdin Input is too big! It can't be more than " + (Integer.MAX_VALUE - 1) + " characters.");
+        }
+        return new Chars(text);
+    }
+
+    public static StdinInput load(FileChannel channel) {
+        /**
+         * Feeds a file to the program. A regular file is mapped into memory
+         * and anything else, like a pipe, is read in whole. Input that is
+         * all ASCII is looked up a byte at a time right where it is, and
+         * anything else is decoded from UTF-8 once.
+         *
+         * @param channel   the input in UTF-8
+         * @return          the input, ready for the Stdin Input cell
+         */
+        try {
+            long length = channel.size();
+            if (length >= Integer.MAX_VALUE) {
+                throw new RuntimeException("Stdin Input is too big! It can't be more than " + (Integer.MAX_VALUE - 1) + " bytes.");
+            }
+            // A pipe has no size, so there is nothing to map.
+            if (length > 0) {
+                try {
+                    return of(channel.map(FileChannel.MapMode.READ_ONLY, 0, length));
+                } catch (IOException | UnsupportedOperationException e) {
+                    // Read in whole below.
+                }
+            }
+            return read(channel);
+        } catch (IOException e) {
+            throw new RuntimeException("Cannot read the Stdin Input!", e);
+        }
+    }
+
+    public static StdinInput read(ReadableByteChannel channel) throws IOException {
+        /**
+         * Feeds everything left in a channel to the program.
+         *
+         * @param channel   the input in UTF-8
+         * @return          the input, ready for the Stdin Input cell
+         */
+        ByteBuffer bytes = ByteBuffer.allocate(1 << 16);
+        while (channel.read(bytes) >= 0) {
+            if (!bytes.hasRemaining()) {
+                if (bytes.capacity() >= Integer.MAX_VALUE / 2) {
+                    throw new RuntimeException("Stdin Input is too big! It can't be more than " + (Integer.MAX_VALUE - 1) + " bytes.");
+                }
+                bytes = ByteBuffer.allocate(bytes.capacity() * 2).put(bytes.flip());
+            }
+        }
+        return of(bytes.flip());
+    }
+
+    private static StdinInput of(ByteBuffer bytes) {
+        byte[] chunk = new byte[1 << 16];
+        int high = 0;
+        for (int from = 0; from < bytes.limit() && high >= 0; from += chunk.length) {
+            int length = Math.min(chunk.length, bytes.limit() - from);
+            bytes.get(from, chunk, 0, length);
+            high |= or(chunk, length);
+        }
+        if (high >= 0) {
+            return new Bytes(bytes);
+        }
+        try {
+            CharBuffer text = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE)
+                .decode(bytes);
+            return new Chars(text);
+        } catch (CharacterCodingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static int or(byte[] chunk, int length) {
+        int high = 0;
+        for (int j = 0; j < length; j++) {
+            high |= chunk[j];
+        }
+        return high;
+    }
+}
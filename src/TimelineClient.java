@@ -0,0 +1,78 @@
+package src;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+public class TimelineClient {
+    // Sends a program to a running TimelineDaemon and prints what comes back.
+    // It uses no other class of the interpreter, so launching it from source
+    // compiles this file and nothing else. The frames are the ones
+    // TimelineDaemon describes.
+
+    public static void main(String[] args) throws IOException {
+        int first = 0;
+        Path socket = Path.of(System.getProperty("java.io.tmpdir"), "timeline.sock");
+        if (args.length > 0 && args[0].startsWith("--socket=")) {
+            socket = Path.of(args[0].substring("--socket=".length()));
+            first = 1;
+        }
+        byte[] program = System.in.readAllBytes();
+        int status;
+        try (SocketChannel daemon = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+            if (!daemon.connect(UnixDomainSocketAddress.of(socket))) {
+                throw new IOException("Cannot connect to " + socket + "!");
+            }
+            DataOutputStream request = new DataOutputStream(Channels.newOutputStream(daemon));
+            request.writeInt(args.length - first);
+            for (int i = first; i < args.length; i++) {
+                write(request, args[i].getBytes(StandardCharsets.UTF_8));
+            }
+            write(request, program);
+            request.flush();
+            status = receive(new DataInputStream(Channels.newInputStream(daemon)));
+        } catch (IOException e) {
+            System.err.println("Cannot reach the Timeline daemon on " + socket + "! Start one with --daemon. " + e.getMessage());
+            status = 1;
+        }
+        System.exit(status);
+    }
+
+    private static void write(DataOutputStream request, byte[] bytes) throws IOException {
+        request.writeInt(bytes.length);
+        request.write(bytes);
+    }
+
+    private static int receive(DataInputStream response) throws IOException {
+        /**
+         * Streams the output and the errors of the run to stdout and stderr
+         * as they come in.
+         *
+         * @param response  the answer of the daemon
+         * @return          the exit status of the run
+         */
+        byte[] buffer = new byte[1 << 13];
+        for (;;) {
+            byte tag = response.readByte();
+            int length = response.readInt();
+            if (tag == 'X') {
+                return response.readInt();
+            }
+            OutputStream stream = (tag == 'E') ? System.err : System.out;
+            for (int n; length > 0; length -= n) {
+                n = response.read(buffer, 0, Math.min(buffer.length, length));
+                if (n < 0) {
+                    throw new IOException("The daemon hung up in the middle of its answer.");
+                }
+                stream.write(buffer, 0, n);
+            }
+            stream.flush();
+        }
+    }
+}
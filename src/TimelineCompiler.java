@@ -0,0 +1,554 @@
+package src;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+public class TimelineCompiler {
+    private static final String SUPER = "src/CompiledProgram";
+    private static final String CONTEXT = "src/CompiledProgram$Context";
+    private static final String NAME = "TimelineProgram";
+
+    // Locals of every generated part: this, the context of the run, the
+    // block to start on, the layer, the reset layer and the step count. The
+    // layer, the reset layer and the step count are longs and take two
+    // locals each.
+    private static final int RUN = 1;
+    private static final int ENTRY = 2;
+    private static final int LAYER = 3;
+    private static final int RESET_LAYER = 5;
+    private static final int STEPS = 7;
+    private static final int LOCALS = 9;
+    // Locals of execute(): this, the context of the run, the block to go on
+    // with, and which part each block is in.
+    private static final int BLOCK = 2;
+    private static final int PARTS = 3;
+
+    // HotSpot never JIT-compiles a method of more than 8000 bytes of
+    // bytecode, so the blocks are spread over parts that each stay under
+    // it. Small parts are compiled sooner, and the JIT gives up on ones
+    // with too many calls in them, so a part is closed once what it holds,
+    // with the stubs and the switch it still needs, comes to PART_BYTES.
+    private static final int MAX_METHOD = 8000;
+    private static final int PART_BYTES = 2000;
+    // An exit to another part: two fields set, a block pushed and a return.
+    private static final int STUB_BYTES = 16;
+    // execute() has a case for every part and has to stay under MAX_METHOD too.
+    private static final int MAX_PARTS = 256;
+
+    // The compiler keeps a label for every (cell, direction), so boards
+    // bigger than this run in the interpreter rather than fill the heap.
+    private static final int MAX_SIZE = 1 << 20;
+
+    private static class ProgramLoader extends ClassLoader {
+        ProgramLoader() {
+            super(CompiledProgram.class.getClassLoader());
+        }
+
+        Class<?> define(byte[] bytes) {
+            return defineClass(NAME, bytes, 0, bytes.length);
+        }
+    }
+
+    private final Program program;
+    private final ClassAssembler assembler = new ClassAssembler(NAME, SUPER);
+    // The labels of the part being written, and the states they are for.
+    // A label that is still not placed when the part is closed is for a
+    // block in another part, and becomes a stub that returns to execute().
+    private final ClassAssembler.Label[] labels;
+    private final List<Integer> labelled = new ArrayList<Integer>();
+    private int unplaced = 0;
+    private final int[] blocks;
+    private int[] parts;
+    // Which ways the data pointer can really leave each movement cell, so
+    // the ways it never takes get no blocks.
+    private final ControlFlow flow;
+    // Which infinity cells have a table in a static field of the class.
+    private final boolean[] tables = new boolean[Opcode.values().length];
+
+    private TimelineCompiler(Program program) {
+        this.program = program;
+        labels = new ClassAssembler.Label[program.size() * 4];
+        blocks = new int[program.size() * 4];
+        flow = program.flow();
+    }
+
+    public static CompiledProgram compile(Program program) {
+        /**
+         * Compiles the program into a class of its own. Every (cell,
+         * direction) the data pointer can reach becomes a block of bytecode
+         * that jumps straight to the block after it. The blocks are split
+         * over methods the JIT compiles, and only a jump from one method to
+         * another goes back through execute(). Use Program.compiled()
+         * instead, which only does this once for every program.
+         *
+         * @param program   the decoded timeline code
+         * @return          the compiled program, or null if it is too big to compile
+         */
+        if (program.size() > MAX_SIZE) {
+            return null;
+        }
+        TimelineCompiler compiler = new TimelineCompiler(program);
+        byte[] bytes;
+        try {
+            bytes = compiler.assemble();
+        } catch (RuntimeException e) {
+            // Too big for one class, so the interpreter runs it.
+            return null;
+        }
+        try {
+            CompiledProgram compiled = (CompiledProgram)new ProgramLoader().define(bytes).getDeclaredConstructor().newInstance();
+            compiled.span = program.size() * 4;
+            compiled.parts = compiler.parts;
+            return compiled;
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static int state(int cell, Direction direction) {return cell * 4 + direction.ordinal();}
+    private static int cellOf(int state) {return state / 4;}
+    private static Direction directionOf(int state) {return Direction.values()[state % 4];}
+
+    private int straight(int state) {
+        return state(program.next(cellOf(state), directionOf(state)), directionOf(state));
+    }
+
+    private int turned(int state, Direction direction) {
+        return state(program.next(cellOf(state), direction), direction);
+    }
+
+    private ClassAssembler.Label label(int state) {
+        if (labels[state] == null) {
+            labels[state] = new ClassAssembler.Label();
+            labelled.add(state);
+            unplaced++;
+        }
+        return labels[state];
+    }
+
+    private void place(int state) {
+        assembler.bind(label(state));
+        unplaced--;
+    }
+
+    private int[] successors(int state) {
+        /**
+         * Lists where the data pointer can go after a state. The first one
+         * is where it goes most of the time, so its block is laid out next.
+         *
+         * @param state     the cell and the direction the data pointer leaves it in
+         * @return          the states the data pointer can be in next
+         */
+        int cell = cellOf(state);
+        Direction direction = directionOf(state);
+        switch (program.opcode(cell)) {
+            case MOVEMENT1:
+            case MOVEMENT2:
+            case MOVEMENT3:
+            case MOVEMENT4:
+                // Indexed by the ordinal of the direction picked up. A way
+                // the data pointer never takes goes to the first one it does.
+                int ways = flow.directions(cellOf(state));
+                Direction first = Direction.values()[Integer.numberOfTrailingZeros(ways | 0x10) & 3];
+                int[] next = new int[4];
+                for (Direction way : Direction.values()) {
+                    next[way.ordinal()] = turned(state, ((ways & (1 << way.ordinal())) != 0) ? way : first);
+                }
+                return next;
+            case TURN_CLOCKWISE:
+                return new int[] {turned(state, direction.turnClockwise())};
+            case TURN_COUNTERCLOCKWISE:
+                return new int[] {turned(state, direction.turnCounterclockwise())};
+            case TURN_CLOCKWISE_IF_TRUE:
+                return new int[] {straight(state), turned(state, direction.turnClockwise())};
+            case TURN_COUNTERCLOCKWISE_IF_TRUE:
+                return new int[] {straight(state), turned(state, direction.turnCounterclockwise())};
+            case HOP:
+                return new int[] {straight(straight(state))};
+            case TERMINATE:
+                return new int[] {};
+            default:
+                return new int[] {straight(state)};
+        }
+    }
+
+    private List<Integer> layout() {
+        /**
+         * Finds every state the data pointer can reach from the top left
+         * corner, in the order their blocks are written. Each block is
+         * followed by its first successor when it can be, so most blocks
+         * fall through instead of jumping.
+         *
+         * @return          the reachable states in block order
+         */
+        boolean[] seen = new boolean[program.size() * 4];
+        List<Integer> order = new ArrayList<Integer>();
+        ArrayDeque<Integer> pending = new ArrayDeque<Integer>();
+        pending.push(state(0, Direction.RIGHT));
+        while (!pending.isEmpty()) {
+            int state = pending.pop();
+            while (!seen[state]) {
+                seen[state] = true;
+                order.add(state);
+                int[] next = successors(state);
+                if (next.length == 0) {
+                    break;
+                }
+                for (int i = next.length - 1; i > 0; i--) {
+                    pending.push(next[i]);
+                }
+                state = next[0];
+            }
+        }
+        return order;
+    }
+
+    private byte[] assemble() {
+        /**
+         * Writes the generated class: a constructor, the parts that hold
+         * the block of every reachable state, execute(), which runs the
+         * part of the block to go on with until one terminates, and the
+         * class initializer, which sets the fields of the tables.
+         *
+         * @return          the class file
+         */
+        assembler.beginMethod();
+        assembler.op(ClassAssembler.ALOAD, 0);
+        assembler.op2(ClassAssembler.INVOKESPECIAL, assembler.methodRef(SUPER, "<init>", "()V"));
+        assembler.op(ClassAssembler.RETURN);
+        assembler.endMethod("<init>", "()V", 1, 1);
+
+        List<Integer> order = layout();
+        for (int i = 0; i < order.size(); i++) {
+            blocks[order.get(i)] = i;
+        }
+        parts = new int[order.size()];
+        int count = 0;
+        for (int first = 0; first < order.size(); count++) {
+            if (count == MAX_PARTS) {
+                throw new RuntimeException("Timeline program is too big to compile!");
+            }
+            first = assemblePart(order, first, count);
+        }
+
+        // for (int block = 0; block >= 0;) block = part<parts[block]>(context, block);
+        ClassAssembler.Label loop = new ClassAssembler.Label();
+        ClassAssembler.Label[] calls = new ClassAssembler.Label[count];
+        assembler.beginMethod();
+        assembler.op(ClassAssembler.ALOAD, 0);
+        assembler.op2(ClassAssembler.GETFIELD, assembler.fieldRef(SUPER, "parts", "[I"));
+        assembler.op(ClassAssembler.ASTORE, PARTS);
+        assembler.pushInt(0);
+        assembler.op(ClassAssembler.ISTORE, BLOCK);
+        assembler.bind(loop);
+        assembler.op(ClassAssembler.ALOAD, PARTS);
+        assembler.op(ClassAssembler.ILOAD, BLOCK);
+        assembler.op(ClassAssembler.IALOAD);
+        for (int i = 0; i < count; i++) {
+            calls[i] = new ClassAssembler.Label();
+        }
+        assembler.tableswitch(calls[0], calls);
+        for (int i = 0; i < count; i++) {
+            assembler.bind(calls[i]);
+            assembler.op(ClassAssembler.ALOAD, 0);
+            assembler.op(ClassAssembler.ALOAD, RUN);
+            assembler.op(ClassAssembler.ILOAD, BLOCK);
+            assembler.op2(ClassAssembler.INVOKEVIRTUAL, assembler.methodRef(NAME, "part" + i, "(L" + CONTEXT + ";I)I"));
+            assembler.op(ClassAssembler.ISTORE, BLOCK);
+            assembler.op(ClassAssembler.ILOAD, BLOCK);
+            assembler.jump(ClassAssembler.IFGE, loop);
+            assembler.op(ClassAssembler.RETURN);
+        }
+        assembler.endMethod("execute", "(L" + CONTEXT + ";)V", 3, 4);
+
+        assembler.beginMethod();
+        for (Opcode opcode : Opcode.values()) {
+            if (tables[opcode.ordinal()]) {
+                // TABLE = (Type[])Machine.table(Opcode.TABLE);
+                assembler.op2(ClassAssembler.GETSTATIC, assembler.fieldRef("src/Opcode", opcode.name(), "Lsrc/Opcode;"));
+                assembler.op2(ClassAssembler.INVOKESTATIC, assembler.methodRef("src/Machine", "table", "(Lsrc/Opcode;)[Ljava/lang/Object;"));
+                assembler.op2(ClassAssembler.CHECKCAST, assembler.classRef(tableDescriptor(opcode)));
+                assembler.op2(ClassAssembler.PUTSTATIC, table(opcode));
+            }
+        }
+        assembler.op(ClassAssembler.RETURN);
+        assembler.endClassInitializer(1);
+        return assembler.toByteArray();
+    }
+
+    private int assemblePart(List<Integer> order, int first, int part) {
+        /**
+         * Writes the blocks from first on into a part, until the part is as
+         * big as it should get. The part starts on the block execute()
+         * passes it, which the switch at its end picks out once where the
+         * run is has been loaded. A jump to a block of another part goes to
+         * a stub that leaves where the run is in the context and returns
+         * the block to go on with. Nothing else is loaded when a part
+         * starts, so going from one part to another costs little more than
+         * a call.
+         *
+         * @param order     the reachable states in block order
+         * @param first     the first block of the part
+         * @param part      the number of the part
+         * @return          the first block after the part
+         */
+        assembler.beginMethod();
+        ClassAssembler.Label start = new ClassAssembler.Label();
+        assembler.jump(ClassAssembler.GOTO, start);
+        int end = first;
+        boolean fallsThrough = false;
+        do {
+            int state = order.get(end);
+            place(state);
+            parts[end] = part;
+            end++;
+            fallsThrough = emit(state, end - 1, (end < order.size()) ? order.get(end) : -1);
+        } while (end < order.size()
+            && assembler.position() + STUB_BYTES * unplaced + 4 * (end - first) < PART_BYTES);
+        if (fallsThrough) {
+            assembler.jump(ClassAssembler.GOTO, label(order.get(end)));
+        }
+
+        for (int state : labelled) {
+            if (!labels[state].isPlaced()) {
+                // run.layer = layer; run.steps = steps; return block;
+                place(state);
+                assembler.op(ClassAssembler.ALOAD, RUN);
+                assembler.op(ClassAssembler.LLOAD, LAYER);
+                assembler.op2(ClassAssembler.PUTFIELD, assembler.fieldRef(CONTEXT, "layer", "J"));
+                assembler.op(ClassAssembler.ALOAD, RUN);
+                assembler.op(ClassAssembler.LLOAD, STEPS);
+                assembler.op2(ClassAssembler.PUTFIELD, assembler.fieldRef(CONTEXT, "steps", "J"));
+                assembler.pushInt(blocks[state]);
+                assembler.op(ClassAssembler.IRETURN);
+            }
+        }
+
+        assembler.bind(start);
+        assembler.op(ClassAssembler.ALOAD, RUN);
+        assembler.op2(ClassAssembler.GETFIELD, assembler.fieldRef(CONTEXT, "resetLayer", "J"));
+        assembler.op(ClassAssembler.LSTORE, RESET_LAYER);
+        assembler.op(ClassAssembler.ALOAD, RUN);
+        assembler.op2(ClassAssembler.GETFIELD, assembler.fieldRef(CONTEXT, "layer", "J"));
+        assembler.op(ClassAssembler.LSTORE, LAYER);
+        assembler.op(ClassAssembler.ALOAD, RUN);
+        assembler.op2(ClassAssembler.GETFIELD, assembler.fieldRef(CONTEXT, "steps", "J"));
+        assembler.op(ClassAssembler.LSTORE, STEPS);
+        ClassAssembler.Label[] entries = new ClassAssembler.Label[end - first];
+        for (int i = first; i < end; i++) {
+            entries[i - first] = labels[order.get(i)];
+        }
+        assembler.op(ClassAssembler.ILOAD, ENTRY);
+        assembler.pushInt(first);
+        assembler.op(ClassAssembler.ISUB);
+        assembler.tableswitch(entries[0], entries);
+        if (assembler.position() > MAX_METHOD) {
+            throw new RuntimeException("Timeline program is too big to compile!");
+        }
+        assembler.endMethod("part" + part, "(L" + CONTEXT + ";I)I", 8, LOCALS);
+
+        for (int state : labelled) {
+            labels[state] = null;
+        }
+        labelled.clear();
+        unplaced = 0;
+        return end;
+    }
+
+    private int table(Opcode opcode) {
+        /**
+         * Finds the field the class keeps the table of an infinity cell in,
+         * and adds it the first time it is asked for. The tables never
+         * change, so the JIT folds the field and its length into the code.
+         *
+         * @param opcode    the cell
+         * @return          the field
+         */
+        if (!tables[opcode.ordinal()]) {
+            assembler.field(opcode.name(), tableDescriptor(opcode));
+            tables[opcode.ordinal()] = true;
+        }
+        return assembler.fieldRef(NAME, opcode.name(), tableDescriptor(opcode));
+    }
+
+    private static String tableDescriptor(Opcode opcode) {return "[L" + tableType(opcode) + ";";}
+
+    private static String tableType(Opcode opcode) {
+        switch (opcode) {
+            case BOOLEAN:
+            case DIGIT:
+            case STDIN_INPUT:
+            case LOWERCASE_LETTER:
+            case SYMBOL:
+            case UPPERCASE_LETTER:
+            case WHITESPACE:
+                return "src/Value";
+            case BOOLEAN_OPERATOR:
+            case CONCATENATION:
+            case EQUALITY_OPERATOR:
+            case MATH_OPERATOR:
+            case BITWISE:
+            case ESTIMATION_OPERATOR:
+            case TRIG_OPERATOR:
+                return "src/Operator";
+            case MOVEMENT1:
+            case MOVEMENT2:
+            case MOVEMENT3:
+            case MOVEMENT4:
+                return "src/Direction";
+            default:
+                return null;
+        }
+    }
+
+    private void pickUp(Opcode opcode) {
+        if (opcode == Opcode.STDIN_INPUT) {
+            // stdin(layer)
+            assembler.op(ClassAssembler.ALOAD, RUN);
+            assembler.op(ClassAssembler.LLOAD, LAYER);
+            call("stdin", "(J)Lsrc/Value;");
+            return;
+        }
+        // TABLE[Machine.remainder(layer, TABLE.length)]
+        int field = table(opcode);
+        assembler.op2(ClassAssembler.GETSTATIC, field);
+        assembler.op(ClassAssembler.LLOAD, LAYER);
+        assembler.op2(ClassAssembler.GETSTATIC, field);
+        assembler.op(ClassAssembler.ARRAYLENGTH);
+        assembler.op2(ClassAssembler.INVOKESTATIC, assembler.methodRef("src/Machine", "remainder", "(JI)I"));
+        assembler.op(ClassAssembler.AALOAD);
+    }
+
+    private void checkpoint(int state) {
+        // if (steps >= nextCheck) checkpoint(steps, state, layer);
+        ClassAssembler.Label within = new ClassAssembler.Label();
+        assembler.op(ClassAssembler.LLOAD, STEPS);
+        assembler.op(ClassAssembler.ALOAD, RUN);
+        assembler.op2(ClassAssembler.GETFIELD, assembler.fieldRef(CONTEXT, "nextCheck", "J"));
+        assembler.op(ClassAssembler.LCMP);
+        assembler.jump(ClassAssembler.IFLT, within);
+        assembler.op(ClassAssembler.ALOAD, RUN);
+        assembler.op(ClassAssembler.LLOAD, STEPS);
+        assembler.pushInt(state);
+        assembler.op(ClassAssembler.LLOAD, LAYER);
+        call("checkpoint", "(JIJ)V");
+        assembler.bind(within);
+    }
+
+    private void call(String name, String descriptor) {
+        assembler.op2(ClassAssembler.INVOKEVIRTUAL, assembler.methodRef(CONTEXT, name, descriptor));
+    }
+
+    private boolean emit(int state, int block, int following) {
+        /**
+         * Writes the block of one state: count the step, do what the cell
+         * does, and then jump to the next state unless its block comes right
+         * after this one. Every loop has to jump back to an earlier block
+         * somewhere, so only blocks that can do that check the budget, and
+         * they do it first, while the step count and the layer still say
+         * where the data pointer is.
+         *
+         * @param state         the state to write the block of
+         * @param block         where the block is in the block order
+         * @param following     the state whose block comes after this one
+         * @return              whether or not the block falls through to it
+         */
+        Opcode opcode = program.opcode(cellOf(state));
+        int[] next = successors(state);
+        String type = tableType(opcode);
+        for (int successor : next) {
+            if (blocks[successor] <= block) {
+                checkpoint(state);
+                break;
+            }
+        }
+        assembler.op(ClassAssembler.LLOAD, STEPS);
+        assembler.op(ClassAssembler.LCONST_1);
+        assembler.op(ClassAssembler.LADD);
+        assembler.op(ClassAssembler.LSTORE, STEPS);
+        if (type != null && !type.equals("src/Direction")) {
+            assembler.op(ClassAssembler.ALOAD, RUN);
+            pickUp(opcode);
+            call("push", "(L" + type + ";)V");
+        }
+        switch (opcode) {
+            case MOVEMENT1:
+            case MOVEMENT2:
+            case MOVEMENT3:
+            case MOVEMENT4:
+                pickUp(opcode);
+                assembler.op2(ClassAssembler.INVOKEVIRTUAL, assembler.methodRef("src/Direction", "ordinal", "()I"));
+                ClassAssembler.Label[] targets = new ClassAssembler.Label[next.length];
+                for (int i = 0; i < next.length; i++) {
+                    targets[i] = label(next[i]);
+                }
+                assembler.tableswitch(targets[0], targets);
+                return false;
+            case TURN_CLOCKWISE_IF_TRUE:
+            case TURN_COUNTERCLOCKWISE_IF_TRUE:
+                assembler.op(ClassAssembler.ALOAD, RUN);
+                call("isTrue", "()Z");
+                assembler.jump(ClassAssembler.IFNE, label(next[1]));
+                break;
+            case NEXT_LAYER:
+                ClassAssembler.Label inRange = new ClassAssembler.Label();
+                assembler.op(ClassAssembler.LLOAD, LAYER);
+                assembler.op(ClassAssembler.LCONST_1);
+                assembler.op(ClassAssembler.LADD);
+                assembler.op(ClassAssembler.LSTORE, LAYER);
+                assembler.op(ClassAssembler.LLOAD, LAYER);
+                assembler.op(ClassAssembler.LLOAD, RESET_LAYER);
+                assembler.op(ClassAssembler.LCMP);
+                assembler.jump(ClassAssembler.IFLT, inRange);
+                assembler.op(ClassAssembler.LCONST_0);
+                assembler.op(ClassAssembler.LSTORE, LAYER);
+                assembler.bind(inRange);
+                assembler.op(ClassAssembler.ALOAD, RUN);
+                assembler.op(ClassAssembler.LLOAD, LAYER);
+                assembler.op(ClassAssembler.LLOAD, STEPS);
+                call("advance", "(JJ)V");
+                break;
+            case STORAGE0:
+            case STORAGE1:
+            case STORAGE2:
+            case STORAGE3:
+            case STORAGE4:
+            case STORAGE5:
+            case STORAGE6:
+            case STORAGE7:
+            case STORAGE8:
+            case STORAGE9:
+                assembler.op(ClassAssembler.ALOAD, RUN);
+                assembler.pushInt(cellOf(state));
+                assembler.pushInt(opcode.symbol - '0');
+                call("store", "(II)V");
+                break;
+            case CLEAR:
+                assembler.op(ClassAssembler.ALOAD, RUN);
+                call("clear", "()V");
+                break;
+            case PRINT_AND_CLEAR:
+                assembler.op(ClassAssembler.ALOAD, RUN);
+                call("printAndClear", "()V");
+                break;
+            case PRINT:
+                assembler.op(ClassAssembler.ALOAD, RUN);
+                call("print", "()V");
+                break;
+            case TERMINATE:
+                assembler.op(ClassAssembler.ALOAD, RUN);
+                assembler.op(ClassAssembler.LLOAD, STEPS);
+                call("terminate", "(J)V");
+                assembler.pushInt(-1);
+                assembler.op(ClassAssembler.IRETURN);
+                return false;
+            default:
+                break;
+        }
+        if (next[0] != following) {
+            assembler.jump(ClassAssembler.GOTO, label(next[0]));
+            return false;
+        }
+        return true;
+    }
+}
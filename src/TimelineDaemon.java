@@ -0,0 +1,239 @@
+package src;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class TimelineDaemon {
+    // A daemon keeps one JVM, and the code the JIT has compiled in it, for
+    // every run. TimelineClient sends it the options, then the program,
+    // each as an int length and that many bytes of UTF-8:
+    //
+    //   int count, count times (int length, option), int length, program
+    //
+    // and the daemon answers in frames of a tag, an int length and that
+    // many bytes: OUTPUT for what the program prints, ERROR for what goes
+    // to stderr, and one EXIT with the exit status as an int at the end.
+    public static final Path DEFAULT_SOCKET = Path.of(System.getProperty("java.io.tmpdir"), "timeline.sock");
+    public static final byte OUTPUT = 'O';
+    public static final byte ERROR = 'E';
+    public static final byte EXIT = 'X';
+
+    // Programs sent most recently, by their code, so a program that is run
+    // over and over is only decoded once.
+    private static final int MAX_PROGRAMS = 64;
+    private static final int MAX_OPTIONS = 1 << 10;
+
+    // Requests without a time limit of their own get this one, so a
+    // program that never ends can't keep a thread of the daemon forever.
+    public static final long DEFAULT_NANOS = 60_000_000_000L;
+
+    private final Path socket;
+    // Runs are CPU-bound, so there is a thread for each core and the
+    // requests after that wait their turn.
+    private final ExecutorService runs = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    private final Map<ByteBuffer, Program> programs = new LinkedHashMap<ByteBuffer, Program>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<ByteBuffer, Program> eldest) {return size() > MAX_PROGRAMS;}
+    };
+
+    public TimelineDaemon(Path socket) {
+        this.socket = socket;
+    }
+
+    public void serve() {
+        /**
+         * Listens on the socket until the JVM is stopped, and runs every
+         * request on the thread pool. Requests share nothing but the decoded
+         * programs, which never change.
+         */
+        try {
+            Files.deleteIfExists(socket);
+            ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+            server.bind(UnixDomainSocketAddress.of(socket));
+            socket.toFile().deleteOnExit();
+            System.err.println("Timeline daemon is listening on " + socket + ".");
+            for (;;) {
+                SocketChannel client = server.accept();
+                runs.execute(() -> handle(client));
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Cannot listen on " + socket + "!", e);
+        }
+    }
+
+    private void handle(SocketChannel client) {
+        /**
+         * Reads one request, runs it, and streams back what it prints.
+         * Anything that goes wrong is sent back instead of stopping the
+         * daemon.
+         *
+         * @param client    the connection of the request
+         */
+        DataInputStream request = new DataInputStream(Channels.newInputStream(client));
+        Thread watcher = watcher(request);
+        try (client) {
+            Frames frames = new Frames(client);
+            int status;
+            try {
+                status = run(request, frames, watcher);
+            } catch (RuntimeException | StackOverflowError e) {
+                frames.send(ERROR, (e.getMessage() == null ? e.toString() : e.getMessage()) + "\n");
+                status = 1;
+            }
+            frames.send(EXIT, ByteBuffer.allocate(4).putInt(0, status));
+        } catch (IOException e) {
+            // The client is gone, so there is no one to tell.
+        } finally {
+            // Closing the connection stops the watcher, which must not
+            // cancel the next request this thread runs.
+            while (watcher.isAlive()) {
+                try {
+                    watcher.join();
+                } catch (InterruptedException e) {
+                    // The watcher itself, as the client hung up.
+                }
+            }
+            Thread.interrupted();
+        }
+    }
+
+    private static Thread watcher(DataInputStream request) {
+        /**
+         * Makes the thread that watches the connection once the whole
+         * request is read. A client sends nothing after its request, so the
+         * end of the stream means it hung up, and the run is cancelled at
+         * its next look at the budget. The watcher ends when the daemon
+         * closes the connection.
+         *
+         * @param request   the request of the thread that runs it
+         * @return          the watcher, not started yet
+         */
+        Thread worker = Thread.currentThread();
+        Thread watcher = new Thread(() -> {
+            try {
+                if (request.read() < 0) {
+                    worker.interrupt();
+                }
+            } catch (IOException e) {
+                // Closed by the daemon once the run is over.
+            }
+        }, "timeline-daemon-watcher");
+        watcher.setDaemon(true);
+        return watcher;
+    }
+
+    private int run(DataInputStream request, Frames frames, Thread watcher) throws IOException {
+        /**
+         * Runs the program of a request with the options of the request.
+         * Requests without a time limit get DEFAULT_NANOS.
+         *
+         * @param request   the request, after the daemon accepted it
+         * @param frames    where to send the output
+         * @param watcher   what watches for the client to hang up
+         * @return          the exit status, like the command line would give
+         */
+        int count = request.readInt();
+        if (count < 0 || count > MAX_OPTIONS) {
+            throw new RuntimeException("A request can't have " + count + " options!");
+        }
+        String[] args = new String[count];
+        for (int i = 0; i < count; i++) {
+            args[i] = new String(read(request), StandardCharsets.UTF_8);
+        }
+        TimelineInterpreter.Options options = TimelineInterpreter.Options.parse(args);
+        if (options.code != null || options.inputFile != null) {
+            throw new RuntimeException("The daemon takes the program from the stdin of the client and the input from its arguments, not from files!");
+        } else if (options.profile != null || options.daemon != null || options.batch != null || options.explore != null) {
+            throw new RuntimeException("--profile, --batch, --explore and --daemon only work without the daemon!");
+        } else if (options.cache != null) {
+            throw new RuntimeException("--cache only works without the daemon, which keeps the programs it was sent decoded anyway!");
+        }
+        Program program = program(ByteBuffer.wrap(read(request)));
+        watcher.start();
+        if (options.analyze) {
+            frames.send(ERROR, TimelineInterpreter.analysis(program));
+        }
+        Budget budget = (options.budget.maxNanos == Long.MAX_VALUE) ? options.budget.withNanos(DEFAULT_NANOS) : options.budget;
+        TimelineEngine engine = new TimelineEngine(options.detectCycles, options.compile, budget, options.exact);
+        RunResult result = engine.run(program, StdinInput.of(options.input), new ChannelSink(frames, StandardCharsets.UTF_8));
+        String report = TimelineInterpreter.report(result);
+        if (report != null) {
+            frames.send(ERROR, report + "\n");
+            return 1;
+        }
+        return 0;
+    }
+
+    private Program program(ByteBuffer source) {
+        /**
+         * Decodes the program, or finds it decoded by an earlier request.
+         *
+         * @param source    the timeline code in UTF-8
+         * @return          the decoded program
+         */
+        synchronized (programs) {
+            Program program = programs.get(source);
+            if (program != null) {
+                return program;
+            }
+        }
+        // Decoding goes on outside the lock, so one big program never holds up the others.
+        Program program = TimelineEngine.compile(source.duplicate());
+        synchronized (programs) {
+            programs.put(source, program);
+        }
+        return program;
+    }
+
+    private static byte[] read(DataInputStream request) throws IOException {
+        int length = request.readInt();
+        if (length < 0) {
+            throw new RuntimeException("A request can't have a part of " + length + " bytes!");
+        }
+        byte[] bytes = request.readNBytes(length);
+        if (bytes.length < length) {
+            throw new RuntimeException("The request ended " + (length - bytes.length) + " bytes early!");
+        }
+        return bytes;
+    }
+
+    private static class Frames implements WritableByteChannel {
+        // Everything written is sent back to the client as OUTPUT frames.
+        private final SocketChannel client;
+
+        Frames(SocketChannel client) {
+            this.client = client;
+        }
+
+        public int write(ByteBuffer bytes) throws IOException {
+            int length = bytes.remaining();
+            send(OUTPUT, bytes);
+            return length;
+        }
+
+        void send(byte tag, String text) throws IOException {send(tag, ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)));}
+
+        void send(byte tag, ByteBuffer payload) throws IOException {
+            ByteBuffer header = ByteBuffer.allocate(5).put(tag).putInt(payload.remaining()).flip();
+            while (header.hasRemaining() || payload.hasRemaining()) {
+                client.write(new ByteBuffer[] {header, payload});
+            }
+        }
+
+        public boolean isOpen() {return client.isOpen();}
+        public void close() {}
+    }
+}
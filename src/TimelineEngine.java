@@ -0,0 +1,272 @@
+package src;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+public class TimelineEngine {
+    // An engine only holds its settings. Everything a run changes lives in
+    // that run's Machine, so one engine and one Program can be shared by
+    // any number of runs on any number of threads.
+    public final boolean detectCycles;
+    public final boolean toBytecode;
+    public final Budget budget;
+    public final boolean exact;
+
+    public TimelineEngine() {
+        this(false, false);
+    }
+
+    public TimelineEngine(boolean detectCycles, boolean toBytecode) {
+        this(detectCycles, toBytecode, Budget.UNLIMITED);
+    }
+
+    public TimelineEngine(boolean detectCycles, boolean toBytecode, Budget budget) {
+        this(detectCycles, toBytecode, budget, false);
+    }
+
+    public TimelineEngine(boolean detectCycles, boolean toBytecode, Budget budget, boolean exact) {
+        this.detectCycles = detectCycles;
+        this.toBytecode = toBytecode;
+        this.budget = budget;
+        this.exact = exact;
+    }
+
+    public static Program compile(String source) {
+        /**
+         * Lays the timeline code out on a board as wide as its longest line
+         * and decodes it.
+         *
+         * @param source    the timeline code
+         * @return          the decoded program, which never changes
+         */
+        TimelineEvents.ProgramLoad event = loading();
+        return loaded(Program.decode(source), event);
+    }
+
+    public static Program compile(ByteBuffer source) {
+        TimelineEvents.ProgramLoad event = loading();
+        return loaded(Program.decode(source), event);
+    }
+
+    public static Program load(Path path) {
+        /**
+         * Decodes the timeline code in a file, mapped into memory rather
+         * than read onto the heap, so even programs of many megabytes load
+         * in a few milliseconds.
+         *
+         * @param path      the file with the timeline code
+         * @return          the decoded program, which never changes
+         */
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return load(channel);
+        } catch (IOException e) {
+            throw new RuntimeException("Cannot read the timeline code from " + path + "!", e);
+        }
+    }
+
+    public static Program load(FileChannel channel) {
+        TimelineEvents.ProgramLoad event = loading();
+        return loaded(Program.load(channel), event);
+    }
+
+    public static Program load(Path path, ProgramCache cache) {
+        /**
+         * Loads the timeline code in a file from the cache, which only
+         * decodes it if no earlier run has, and only reads it if the file
+         * changed since.
+         *
+         * @param path      the file with the timeline code
+         * @param cache     where decoded programs are saved
+         * @return          the decoded program, which never changes
+         */
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            TimelineEvents.ProgramLoad event = loading();
+            return loaded(cache.load(channel, path), event);
+        } catch (IOException e) {
+            throw new RuntimeException("Cannot read the timeline code from " + path + "!", e);
+        }
+    }
+
+    public static Program load(FileChannel channel, ProgramCache cache) {
+        TimelineEvents.ProgramLoad event = loading();
+        return loaded(cache.load(channel), event);
+    }
+
+    private static TimelineEvents.ProgramLoad loading() {
+        TimelineEvents.ProgramLoad event = TimelineEvents.recording() ? new TimelineEvents.ProgramLoad() : null;
+        if (event != null) {
+            event.begin();
+        }
+        return event;
+    }
+
+    private static Program loaded(Program program, TimelineEvents.ProgramLoad event) {
+        if (event != null) {
+            event.rows = program.rows;
+            event.cols = program.cols;
+            event.commit();
+        }
+        return program;
+    }
+
+    public RunResult run(Program program, String input, OutputSink output) {
+        return run(program, input, output, null);
+    }
+
+    public RunResult run(Program program, String input, OutputSink output, Profiler profiler) {
+        return run(program, StdinInput.of(input), output, profiler);
+    }
+
+    public RunResult run(Program program, StdinInput input, OutputSink output) {
+        return run(program, input, output, null);
+    }
+
+    public RunResult run(Program program, StdinInput input, OutputSink output, Profiler profiler) {
+        /**
+         * Runs the program from the start until it terminates, until it is
+         * stuck in a loop if the engine detects cycles, or until it runs out
+         * of the budget of the engine.
+         *
+         * @param program   the program to run
+         * @param input     the Stdin Input of the program
+         * @param output    where the program prints to
+         * @param profiler  what counts every step, or null to run at full speed
+         * @return          why and after how many steps the run ended
+         */
+        TimelineEvents.Run event = TimelineEvents.recording() ? new TimelineEvents.Run() : null;
+        if (event != null) {
+            event.begin();
+        }
+        RunResult result = execute(program, input, output, profiler);
+        if (event != null) {
+            event.exitReason = result.exitReason.name();
+            event.steps = result.steps;
+            event.outputs = result.outputs;
+            event.commit();
+        }
+        return result;
+    }
+
+    public RunResult[] runAll(Program program, List<String> inputs, OutputSink[] outputs) {
+        return runAll(program, inputs, outputs, Runtime.getRuntime().availableProcessors());
+    }
+
+    public RunResult[] runAll(Program program, List<String> inputs, OutputSink[] outputs, int parallelism) {
+        /**
+         * Runs the program once for every input, on a work-stealing pool
+         * of its own. Every run has its own machine, so they share nothing
+         * but the program and the class it was compiled to, and a run that
+         * goes on for long never holds up the ones still waiting.
+         *
+         * @param program       the program to run
+         * @param inputs        the Stdin Input of every run
+         * @param outputs       where every run prints to, one for each input
+         * @param parallelism   how many runs go on at once
+         * @return              why and after how many steps every run ended, in the order of the inputs
+         */
+        if (outputs.length != inputs.size()) {
+            throw new IllegalArgumentException(inputs.size() + " inputs need as many outputs, not " + outputs.length + "!");
+        }
+        if (toBytecode && !detectCycles && !inputs.isEmpty()) {
+            // Compiled once up front, so every run starts on the same class.
+            program.compiled();
+        }
+        RunResult[] results = new RunResult[inputs.size()];
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            pool.submit(() -> IntStream.range(0, results.length).parallel()
+                .forEach(i -> results[i] = run(program, inputs.get(i), outputs[i]))).join();
+        } finally {
+            pool.shutdown();
+        }
+        return results;
+    }
+
+    public List<Explorer.Outcome> explore(Program program, int maxLength, String alphabet) {
+        /**
+         * Runs the program on every input of up to maxLength characters of
+         * the alphabet, sharing the steps the inputs have in common. Runs
+         * that come back to a state they were in are STUCK_IN_LOOP whether
+         * or not they print, and runs go over a step limit of
+         * Explorer.DEFAULT_STEPS unless the budget has one.
+         *
+         * @param program   the program to run
+         * @param maxLength the length of the longest input
+         * @param alphabet  the characters the inputs are made of
+         * @return          how the program ends on every input, shortest first
+         */
+        return Explorer.explore(this, program, maxLength, alphabet);
+    }
+
+    private RunResult execute(Program program, StdinInput input, OutputSink output, Profiler profiler) {
+        Machine machine = new Machine(program, input, output);
+        try {
+            machine.limit(budget);
+            machine.accumulator.exact = exact;
+            if (detectCycles || profiler != null) {
+                return step(machine, profiler);
+            } else {
+                CompiledProgram compiled = toBytecode ? program.compiled() : null;
+                boolean terminated = (compiled != null) && compiled.run(machine);
+                if (!terminated && machine.stopped == null) {
+                    // Compiled code hands the last steps before the step limit to the interpreter.
+                    terminated = machine.run();
+                }
+                if (!terminated) {
+                    return new RunResult(machine.stopped, machine.steps, machine.outputs, 0, 0);
+                }
+            }
+        } finally {
+            output.flush();
+        }
+        return new RunResult(RunResult.ExitReason.TERMINATED, machine.steps, machine.outputs, 0, 0);
+    }
+
+    private RunResult step(Machine machine, Profiler profiler) {
+        /**
+         * Runs the machine one cell at a time, for when something has to see
+         * every step. This loop is kept apart from the others so they never
+         * pay for it.
+         *
+         * @param machine   the machine to run
+         * @param profiler  what counts every step, or null
+         * @return          why and after how many steps the run ended
+         */
+        CycleDetector detector = detectCycles ? new CycleDetector(machine) : null;
+        if (profiler != null) {
+            profiler.start();
+        }
+        try {
+            for (;;) {
+                if (machine.steps >= machine.nextCheck && !machine.withinBudget()) {
+                    return new RunResult(machine.stopped, machine.steps, machine.outputs, 0, 0);
+                }
+                Opcode opcode = machine.program.opcode(machine.cell);
+                long layer = machine.layer;
+                if (profiler != null) {
+                    profiler.before(machine);
+                }
+                boolean running = machine.step();
+                if (profiler != null) {
+                    profiler.after(machine, opcode, layer);
+                }
+                if (!running) {
+                    return new RunResult(RunResult.ExitReason.TERMINATED, machine.steps, machine.outputs, 0, 0);
+                }
+                if (detector != null && detector.check(machine)) {
+                    return new RunResult(RunResult.ExitReason.STUCK_IN_LOOP, machine.steps, machine.outputs,
+                        detector.cycleLength, detector.cycleStart);
+                }
+            }
+        } finally {
+            if (profiler != null) {
+                profiler.stop();
+            }
+        }
+    }
+}
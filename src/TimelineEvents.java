@@ -0,0 +1,141 @@
+package src;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+public class TimelineEvents {
+    // Flight Recorder events, so a recording shows what the interpreter was
+    // doing next to GC and JIT activity. Loading the first event class
+    // starts up Flight Recorder, which takes a good part of a second, so no
+    // event is made unless Flight Recorder is already running. Layer changes
+    // and AMORPHOUS accumulators can happen millions of times a second, so
+    // they are off unless a recording turns them on, and the interpreter
+    // asks before it allocates or times anything for them.
+    // The most characters of a value an event keeps.
+    private static final int MAX_TEXT = 64;
+
+    private static class Types {
+        static final EventType LAYER_CHANGE = EventType.getEventType(LayerChange.class);
+        static final EventType AMORPHOUS = EventType.getEventType(Amorphous.class);
+    }
+
+    public static boolean recording() {return FlightRecorder.isInitialized();}
+    public static boolean isLayerChangeEnabled() {return recording() && Types.LAYER_CHANGE.isEnabled();}
+    public static boolean isAmorphousEnabled() {return recording() && Types.AMORPHOUS.isEnabled();}
+
+    @Name("timeline.ProgramLoad")
+    @Label("Program Load")
+    @Category("Timeline")
+    @Description("Timeline code laid out on a board and decoded")
+    public static class ProgramLoad extends Event {
+        @Label("Rows")
+        public int rows;
+
+        @Label("Columns")
+        public int cols;
+    }
+
+    @Name("timeline.Run")
+    @Label("Run")
+    @Category("Timeline")
+    @Description("One run of a program, from the top left corner until it stopped")
+    public static class Run extends Event {
+        @Label("Exit Reason")
+        public String exitReason;
+
+        @Label("Steps")
+        public long steps;
+
+        @Label("Outputs")
+        public long outputs;
+    }
+
+    @Name("timeline.LayerChange")
+    @Label("Layer Change")
+    @Category("Timeline")
+    @Description("The data pointer went down one or more layers")
+    @StackTrace(false)
+    @Enabled(false)
+    public static class LayerChange extends Event {
+        @Label("From Layer")
+        public long fromLayer;
+
+        @Label("To Layer")
+        public long toLayer;
+
+        @Label("Step")
+        public long steps;
+
+        @Label("Time On Layer")
+        @Timespan(Timespan.NANOSECONDS)
+        public long timeOnLayer;
+    }
+
+    @Name("timeline.Amorphous")
+    @Label("Amorphous")
+    @Category("Timeline")
+    @Description("The accumulator became AMORPHOUS, from an evaluation that failed or a second operator")
+    @StackTrace(false)
+    @Enabled(false)
+    public static class Amorphous extends Event {
+        @Label("Cause")
+        public String cause;
+
+        @Label("Left")
+        public String left;
+
+        @Label("Left Length")
+        public int leftLength;
+
+        @Label("Operator")
+        public String operator;
+
+        @Label("Right")
+        public String right;
+
+        @Label("Right Length")
+        public int rightLength;
+    }
+
+    @Name("timeline.OutputFlush")
+    @Label("Output Flush")
+    @Category("Timeline")
+    @Description("Buffered output written out by a sink")
+    @StackTrace(false)
+    public static class OutputFlush extends Event {
+        @Label("Bytes")
+        public long bytes;
+    }
+
+    public static void layerChange(long fromLayer, long toLayer, long steps, long timeOnLayer) {
+        LayerChange event = new LayerChange();
+        event.fromLayer = fromLayer;
+        event.toLayer = toLayer;
+        event.steps = steps;
+        event.timeOnLayer = timeOnLayer;
+        event.commit();
+    }
+
+    public static void amorphous(String cause, Value left, Operator operator, Value right) {
+        /**
+         * Records what the accumulator held when it became AMORPHOUS. Values
+         * can be millions of characters long, so only the start of each is
+         * kept, along with how long it is.
+         */
+        Amorphous event = new Amorphous();
+        event.cause = cause;
+        event.left = left.prefix(MAX_TEXT);
+        event.leftLength = left.length();
+        event.operator = operator.name();
+        event.right = right.prefix(MAX_TEXT);
+        event.rightLength = right.length();
+        event.commit();
+    }
+}
@@ -2,472 +2,379 @@ package src;
 import java.util.Arrays;
 import java.util.List;
 import java.io.BufferedReader;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.InputStreamReader;
-import java.util.HashMap;
-import java.util.LinkedList;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 
 public class TimelineInterpreter {
+    // Where a file redirected into stdin can be opened again, on the systems that have it.
+    private static final Path STDIN = Path.of("/dev/stdin");
 
-    private static enum Direction {
-        UP,
-        LEFT,
-        DOWN,
-        RIGHT;
-    }
-
-    private static final Operator[] mathOperators = {
-        Operator.ADD, 
-        Operator.SUB,
-        Operator.MULT,
-        Operator.DIV,
-        Operator.POW,
-        Operator.MOD,
-        Operator.NEG
-    };
-    private static final Operator[] estimationOperators = {
-        Operator.ROUND, 
-        Operator.CEIL, 
-        Operator.FLOOR,
-        Operator.TRUNC
-    };
-    private static final Operator[] trigOperators = {
-        Operator.SIN,
-        Operator.COS,
-        Operator.TAN,
-        Operator.CSC,
-        Operator.SEC,
-        Operator.COT
-    };
-    private static final Operator[] bitwise = {
-        Operator.BNOT,
-        Operator.BAND,
-        Operator.BOR,
-        Operator.BXOR,
-        Operator.BLSHIFT,
-        Operator.BRSHIFT,
-        Operator.BRSHIFTPLUS
-    };
-    private static final Operator[] booleanOperators = {
-        Operator.NOT,
-        Operator.AND,
-        Operator.OR
-    };
-    private static final Operator[] concatenation = {
-        Operator.CONCAT,
-        Operator.REPEAT
-    };
-    private static final Operator[] equalityOperators = {
-        Operator.EQUALS,
-        Operator.NOTEQUALS,
-        Operator.LESSTHAN,
-        Operator.LESSTHANEQUALS,
-        Operator.GREATERTHAN,
-        Operator.GREATERTHANEQUALS
-    };
-
-    private static final String[] lowercaseLetters = "abcdefghijklmnopqrstuvwxyz".split("");
-    private static final String[] uppercaseLetters = "ABCDEFGHIJKLMNOPQRSTUVWXYZ".split("");
-    private static final String[] digits = "0123456789".split("");
-    private static final String[] symbols = "!\"#$%&'()*+,-./:;<=>?@[\\]^_`{|}~".split("");
-    private static final String[] booleans = {"TRUE", "FALSE"};
-    private static final String[] whitespace = {" ", "\n", "\t"};
-
-    private static String[] stdinInput;
-
-    private static final Direction[] movement1 = {Direction.LEFT, Direction.DOWN, Direction.RIGHT, Direction.UP};
-    private static final Direction[] movement2 = {Direction.DOWN, Direction.RIGHT, Direction.UP, Direction.LEFT};
-    private static final Direction[] movement3 = {Direction.RIGHT, Direction.UP, Direction.LEFT, Direction.DOWN};
-    private static final Direction[] movement4 = {Direction.UP, Direction.LEFT, Direction.DOWN, Direction.RIGHT};
-
-    // While we have the mod function, we use the remainder operator since indices won't be negative.
-    private static Operator getMathOperator(int layer) {return mathOperators[layer % mathOperators.length];}
-    private static Operator getEstimationOperator(int layer) {return estimationOperators[layer % estimationOperators.length];}
-    private static Operator getTrigOperator(int layer) {return trigOperators[layer % trigOperators.length];}
-    private static Operator getBitwise(int layer) {return bitwise[layer % bitwise.length];}
-    private static Operator getBooleanOperator(int layer) {return booleanOperators[layer % booleanOperators.length];}
-    private static Operator getConcatenation(int layer) {return concatenation[layer % concatenation.length];}
-    private static Operator getEqualityOperator(int layer) {return equalityOperators[layer % equalityOperators.length];}
-
-    private static String getLowercaseLetter(int layer) {return lowercaseLetters[layer % lowercaseLetters.length];}
-    private static String getUppercaseLetter(int layer) {return uppercaseLetters[layer % uppercaseLetters.length];}
-    private static String getDigit(int layer) {return digits[layer % digits.length];}
-    private static String getSymbol(int layer) {return symbols[layer % symbols.length];}
-    private static String getWhitespace(int layer) {return whitespace[layer % whitespace.length];}
-    private static String getBoolean(int layer) {return booleans[layer % booleans.length];}
-    private static String getStdinInput(int layer) {return stdinInput[layer % stdinInput.length];}
-
-    private static Direction getMovement1(int layer) {return movement1[layer % movement1.length];}
-    private static Direction getMovement2(int layer) {return movement2[layer % movement2.length];}
-    private static Direction getMovement3(int layer) {return movement3[layer % movement3.length];}
-    private static Direction getMovement4(int layer) {return movement4[layer % movement4.length];}
-
-    private static char[][] retrieveCode() {
+    private static Program retrieveCode(String path, ProgramCache cache) {
         /**
-         * Takes the timeline file and establishes the board for the interpreter
-         * to run on, allowing the program to run.
+         * Takes the timeline file so the engine can establish the board for
+         * the program to run on. A file redirected into stdin is mapped
+         * into memory and decoded in place, and a pipe is read in whole.
          * 
-         * @return          the timeline code
+         * @param path      the timeline file, or null to take it from stdin
+         * @param cache     where decoded programs are saved, or null to always decode
+         * @return          the decoded timeline code
          */
 
-        String[] lines = new BufferedReader(new InputStreamReader(System.in))
-                        .lines()
-                        .toArray(String[]::new);
-        int rows = lines.length;
-        int cols = Arrays.asList(lines.clone())
-                        .stream()
-                        .map(text -> text.length())
-                        .reduce(0, (acc, curr) -> Math.max(acc, curr));
-        char[][] code = new char[rows][cols];
-        for (int r = 0; r < rows; r++) {
-            for (int c = 0; c < lines[r].length(); c++) {
-                code[r][c] = lines[r].charAt(c);
-            }
+        if (path != null) {
+            return (cache == null) ? TimelineEngine.load(Path.of(path)) : TimelineEngine.load(Path.of(path), cache);
+        }
+        if (cache != null && Files.isRegularFile(STDIN)) {
+            // A file redirected into stdin is looked up in the cache by the file, like --program.
+            return TimelineEngine.load(STDIN, cache);
         }
-        // for (int r = 0; r < rows; r++) {
-        //     for (int c = 0; c < cols; c++) {
-        //         System.out.print(code[r][c]);
-        //     }
-        //     System.out.println();
-        // }
-        return code;
+        FileChannel stdin = new FileInputStream(FileDescriptor.in).getChannel();
+        return (cache == null) ? TimelineEngine.load(stdin) : TimelineEngine.load(stdin, cache);
     }
 
-    private static int mod(int a, int b) {
+    private static StdinInput retrieveInput(String path) {
         /**
-         * Returns the modulo of a mod b.
-         * 
-         * @param a         the dividend
-         * @param b         the divisor
-         * @return          the modulo result
+         * Takes the file given to --input as the Stdin Input of the
+         * program, or what is piped into stdin for "-".
+         *
+         * @param path      the input file, or "-" for stdin
+         * @return          the Stdin Input
          */
-        if (Integer.signum(a) == Integer.signum(b)) {
-            return Math.abs(a) % Math.abs(b) * Integer.signum(b);
-        } else if (a == 0) {
-            return 0;
-        } else {
-            return (Math.abs(b) - Math.abs(a) % Math.abs(b)) * Integer.signum(b);
+        if (path.equals("-")) {
+            return StdinInput.load(new FileInputStream(FileDescriptor.in).getChannel());
+        }
+        try (FileChannel channel = FileChannel.open(Path.of(path), StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed.
+            return StdinInput.load(channel);
+        } catch (IOException e) {
+            throw new RuntimeException("Cannot read the Stdin Input from " + path + "!", e);
         }
-    } 
+    }
 
-    private static int lcm(int a, int b) {
+    private static List<String> retrieveInputs(String path) {
         /**
-         * Calculates the Least Common Multiple between
-         * two numbers.
-         * 
-         * Algorithm credit is from
-         * https://www.baeldung.com/java-least-common-multiple.
-         * 
-         * @ param a            natural number
-         * @ param b            natural number
-         * @ return             the lcm between a and b
+         * Takes the Stdin Inputs of a batch, one on each line of the file
+         * given to --batch, or of stdin for "-".
+         *
+         * @param path      the file with the inputs, or "-" for stdin
+         * @return          the inputs, in order
          */
-
-        if (a == 0 || b == 0) {
-            return 0;
-        }
-        int absNumber1 = Math.abs(a);
-        int absNumber2 = Math.abs(b);
-        int absHigherNumber = Math.max(absNumber1, absNumber2);
-        int absLowerNumber = Math.min(absNumber1, absNumber2);
-        int lcm = absHigherNumber;
-        while (lcm % absLowerNumber != 0) {
-            lcm += absHigherNumber;
+        try {
+            if (path.equals("-")) {
+                return new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8)).lines().toList();
+            }
+            return Files.readAllLines(Path.of(path));
+        } catch (IOException | UncheckedIOException e) {
+            throw new RuntimeException("Cannot read the Stdin Inputs from " + path + "!", e);
         }
-        return lcm;
     }
 
-    private static int getResetLayer() {
+    private static void runBatch(Program program, List<String> inputs, TimelineEngine engine) {
         /**
-         * Resets the layer index if the current layer state is the same as
-         * the initial layer state.
-         * 
-         * @ return          the reset layer based on the lcm of each infinity layer size
+         * Runs the timeline code once for every input, on every core, and
+         * prints what each run printed on a line of its own, in the order
+         * of the inputs. Runs that do not terminate are reported on stderr.
+         *
+         * @param program       the decoded timeline code
+         * @param inputs        the Stdin Input of every run
+         * @param engine        the engine with the options of the command line
          */
-
-        List<Integer> infinityCells = Arrays.asList(
-            mathOperators.length,
-            estimationOperators.length,
-            trigOperators.length,
-            lowercaseLetters.length,
-            uppercaseLetters.length,
-            digits.length,
-            symbols.length,
-            bitwise.length,
-            booleanOperators.length,
-            movement1.length,
-            movement2.length,
-            movement3.length,
-            movement4.length,
-            concatenation.length,
-            whitespace.length,
-            booleans.length,
-            equalityOperators.length,
-            stdinInput.length
-        );
-        return infinityCells.stream().reduce(1, (acc, curr) -> lcm(acc, curr));
-    }
-
-    private static Direction turnClockwise(Direction direction) {
-        switch (direction) {
-            case UP: return Direction.RIGHT;
-            case LEFT: return Direction.UP;
-            case DOWN: return Direction.LEFT;
-            case RIGHT: return Direction.DOWN;
-            default: return null;   // Not sure why Java wants this.
+        CaptureSink[] outputs = new CaptureSink[inputs.size()];
+        for (int i = 0; i < outputs.length; i++) {
+            outputs[i] = new CaptureSink();
+        }
+        RunResult[] results = engine.runAll(program, inputs, outputs);
+        OutputSink output = OutputSink.standardOutput();
+        for (CaptureSink run : outputs) {
+            output.print(run.text());
+            output.print("\n");
+        }
+        output.flush();
+        boolean failed = false;
+        for (int i = 0; i < results.length; i++) {
+            String report = report(results[i]);
+            if (report != null) {
+                System.err.println("Input " + (i + 1) + ": " + report.trim());
+                failed = true;
+            }
+        }
+        if (failed) {
+            System.exit(1);
         }
     }
 
-    private static Direction turnCounterclockwise(Direction direction) {
-        switch (direction) {
-            case UP: return Direction.LEFT;
-            case LEFT: return Direction.DOWN;
-            case DOWN: return Direction.RIGHT;
-            case RIGHT: return Direction.UP;
-            default: return null;   // Not sure why Java wants this.
+    private static void explore(Program program, String explore, TimelineEngine engine) {
+        /**
+         * Runs the timeline code on every input --explore asks for, and
+         * prints one line for each: the input, how the run ended, and what
+         * it printed, split by tabs and with line breaks escaped.
+         *
+         * @param program       the decoded timeline code
+         * @param explore       the length of the longest input, a comma, and the alphabet
+         * @param engine        the engine with the options of the command line
+         */
+        int comma = explore.indexOf(',');
+        if (comma < 0) {
+            throw new RuntimeException("--explore needs the length of the longest input and the alphabet, like --explore=3,01!");
+        }
+        long maxLength = limit("--explore", explore.substring(0, comma));
+        if (maxLength > Integer.MAX_VALUE) {
+            throw new RuntimeException("--explore can't make inputs of " + maxLength + " characters!");
+        }
+        OutputSink output = OutputSink.standardOutput();
+        for (Explorer.Outcome outcome : engine.explore(program, (int)maxLength, explore.substring(comma + 1))) {
+            output.print(outcome + "\n");
         }
+        output.flush();
     }
 
-    private static void interpretCode() {
+    private static void interpretCode(Program program, StdinInput input, TimelineEngine engine, String profile) {
         /**
          * Interprets the timeline code and, if so, prints out its output.
          * For the interpreter itself, it will just return the output from
          * the timeline code.
          * 
-         * @param input     the input that gets fed to the timeline code
-         * @return          the output of the timeline code
+         * @param program       the decoded timeline code
+         * @param input         the input that gets fed to the timeline code
+         * @param engine        the engine with the options of the command line
+         * @param profile       the file to write the profile to, or null to not profile
          */
+        Profiler profiler = (profile == null) ? null : new Profiler(program);
+        OutputSink output = OutputSink.standardOutput();
+        // Programs that never end are stopped with Ctrl+C, so what they
+        // printed since the sink last wrote it out, and their profile, which
+        // is the one that matters most, are written on the way out.
+        Thread hook = new Thread(() -> {
+            output.flushWithin(BufferedSink.DELAY);
+            if (profiler != null) {
+                writeProfile(profiler, profile);
+            }
+        });
+        Runtime.getRuntime().addShutdownHook(hook);
+        RunResult result;
+        try {
+            result = engine.run(program, input, output, profiler);
+        } finally {
+            Runtime.getRuntime().removeShutdownHook(hook);
+            if (profiler != null) {
+                writeProfile(profiler, profile);
+            }
+        }
+        String report = report(result);
+        if (report != null) {
+            System.err.println(report);
+            System.exit(1);
+        }
+    }
 
-        // Code References
-        char[][] code = retrieveCode();
-        Point loc = new Point(0, 0);
-        int layer = 0;
-        int resetLayer = getResetLayer();
-        Direction direction = Direction.RIGHT;
+    private static long limit(String option, String value) {
+        /**
+         * Reads the number given to a budget option.
+         *
+         * @param option    the option, for the error message
+         * @param value     what was given to it
+         * @return          the number
+         */
+        try {
+            long limit = Long.parseLong(value);
+            if (limit >= 0) {
+                return limit;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below.
+        }
+        throw new RuntimeException(option + " needs a whole number of at least 0, not \"" + value + "\"!");
+    }
 
-        // Internal Storage
-        Accumulator accumulator = new Accumulator();
-        LinkedList<HashMap<Point,String>> drops = new LinkedList<HashMap<Point,String>>();
-        
-        for (int i = 0 ; i < 10 ; i++) {
-            drops.add(new HashMap<Point, String>());
+    private static void writeProfile(Profiler profiler, String path) {
+        /**
+         * Writes the counters to a JSON file and draws the heatmap on
+         * stderr, so it never mixes with the output of the program.
+         *
+         * @param profiler  the profiler of the run
+         * @param path      the JSON file
+         */
+        profiler.stop();
+        try {
+            Files.writeString(Path.of(path), profiler.toJson());
+        } catch (IOException e) {
+            throw new RuntimeException("Cannot write the profile to " + path + "!", e);
         }
+        System.err.println();
+        System.err.print(profiler.heatmap());
+        System.err.println(profiler.steps + " steps at " + Math.round(profiler.stepsPerSecond())
+            + " steps per second. Profile written to " + path + ".");
+    }
 
-        program:
-        for (;;) {
-            // System.out.println("\n>> I am at: " + loc.r + ", " + loc.c + " doing " + code[loc.r][loc.c]);
-            switch(code[loc.r][loc.c]) {
-                case 'A':
-                    accumulator.push(getBoolean(layer));
-                    break;
-                case 'B':
-                    accumulator.push( getBooleanOperator(layer));
-                    break;
-                case 'C':
-                    accumulator.push(getConcatenation(layer));
-                    break;
-                case 'D':
-                    accumulator.push(getDigit(layer));
-                    break;
-                case 'E':
-                    accumulator.push(getEqualityOperator(layer));
-                    break;
-                case 'I':
-                    accumulator.push(getStdinInput(layer));
-                    break;
-                case 'L':
-                    accumulator.push(getLowercaseLetter(layer));
-                    break;
-                case 'M':
-                    accumulator.push(getMathOperator(layer));
-                    break;
-                case 'N':
-                    accumulator.push(getBitwise(layer));
-                    break;
-                case 'R':
-                    accumulator.push(getEstimationOperator(layer));
-                    break;
-                case 'S':
-                    accumulator.push(getSymbol(layer));
-                    break;
-                case 'T':
-                    accumulator.push(getTrigOperator(layer));
-                    break;
-                case 'U':
-                    accumulator.push(getUppercaseLetter(layer));
-                    break;
-                case 'W':
-                    accumulator.push(getWhitespace(layer));
-                    break;
-                case 'a':
-                    direction = getMovement1(layer);
-                    break;
-                case 'b':
-                    direction = getMovement2(layer);
-                    break;
-                case 'c':
-                    direction = getMovement3(layer);
-                    break;
-                case 'd':
-                    direction = getMovement4(layer);
-                    break;
-                case '>':
-                    direction = turnClockwise(direction);
-                    break;
-                case '<':
-                    direction = turnCounterclockwise(direction);
-                    break;
-                case ')':
-                    if (accumulator.isTrue()) {
-                        direction = turnClockwise(direction);
-                    }
-                    break;
-                case '(':
-                    if (accumulator.isTrue()) {
-                        direction = turnCounterclockwise(direction);
-                    }
-                    break;
-                case '@':
-                    layer = (layer + 1) % resetLayer;
-                    drops.poll();
-                    drops.add(new HashMap<Point,String>());
-                    break;
-                case '#':
-                    switch(direction) {
-                        case UP:
-                            loc.r = mod(loc.r - 1, code.length);
-                            break;
-                        case LEFT:
-                            loc.c = mod(loc.c - 1, code[0].length);
-                            break;
-                        case DOWN:
-                            loc.r = mod(loc.r + 1, code.length);
-                            break;
-                        case RIGHT:
-                            loc.c = mod(loc.c + 1, code[0].length);
-                            break;
-                    }
-                    break;
-                case '0':
-                    if (drops.get(0).containsKey(loc) && accumulator.left.isEmpty())
-                        accumulator.left = drops.get(0).remove(loc);
-                    else if (drops.get(0).containsKey(loc) && accumulator.right.isEmpty())
-                        accumulator.right = drops.get(0).remove(loc);
-                    else if (!drops.get(0).containsKey(loc) && !accumulator.left.isEmpty())
-                        drops.get(0).put(loc, accumulator.left);
-                    break;
-                case '1':
-                    if (drops.get(0).containsKey(loc) && accumulator.left.isEmpty())
-                        accumulator.left = drops.get(0).remove(loc);
-                    else if (drops.get(0).containsKey(loc) && accumulator.right.isEmpty())
-                        accumulator.right = drops.get(0).remove(loc);
-                    else if (!drops.get(1).containsKey(loc) && !accumulator.left.isEmpty())
-                        drops.get(1).put(loc, accumulator.left);
-                    break;
-                case '2':
-                    if (drops.get(0).containsKey(loc) && accumulator.left.isEmpty())
-                        accumulator.left = drops.get(0).remove(loc);
-                    else if (drops.get(0).containsKey(loc) && accumulator.right.isEmpty())
-                        accumulator.right = drops.get(0).remove(loc);
-                    else if (!drops.get(2).containsKey(loc) && !accumulator.left.isEmpty())
-                        drops.get(2).put(loc, accumulator.left);
-                    break;
-                case '3':
-                    if (drops.get(0).containsKey(loc) && accumulator.left.isEmpty())
-                        accumulator.left = drops.get(0).remove(loc);
-                    else if (drops.get(0).containsKey(loc) && accumulator.right.isEmpty())
-                        accumulator.right = drops.get(0).remove(loc);
-                    else if (!drops.get(3).containsKey(loc) && !accumulator.left.isEmpty())
-                        drops.get(3).put(loc, accumulator.left);
-                    break;
-                case '4':
-                    if (drops.get(0).containsKey(loc) && accumulator.left.isEmpty())
-                        accumulator.left = drops.get(0).remove(loc);
-                    else if (drops.get(0).containsKey(loc) && accumulator.right.isEmpty())
-                        accumulator.right = drops.get(0).remove(loc);
-                    else if (!drops.get(4).containsKey(loc) && !accumulator.left.isEmpty())
-                        drops.get(4).put(loc, accumulator.left);
-                    break;
-                case '5':
-                    if (drops.get(0).containsKey(loc) && accumulator.left.isEmpty())
-                        accumulator.left = drops.get(0).remove(loc);
-                    else if (drops.get(0).containsKey(loc) && accumulator.right.isEmpty())
-                        accumulator.right = drops.get(0).remove(loc);
-                    else if (!drops.get(5).containsKey(loc) && !accumulator.left.isEmpty())
-                        drops.get(5).put(loc, accumulator.left);
-                    break;
-                case '6':
-                    if (drops.get(0).containsKey(loc) && accumulator.left.isEmpty())
-                        accumulator.left = drops.get(0).remove(loc);
-                    else if (drops.get(0).containsKey(loc) && accumulator.right.isEmpty())
-                        accumulator.right = drops.get(0).remove(loc);
-                    else if (!drops.get(6).containsKey(loc) && !accumulator.left.isEmpty())
-                        drops.get(6).put(loc, accumulator.left);
-                    break;
-                case '7':
-                    if (drops.get(0).containsKey(loc) && accumulator.left.isEmpty())
-                        accumulator.left = drops.get(0).remove(loc);
-                    else if (drops.get(0).containsKey(loc) && accumulator.right.isEmpty())
-                        accumulator.right = drops.get(0).remove(loc);
-                    else if (!drops.get(7).containsKey(loc) && !accumulator.left.isEmpty())
-                        drops.get(7).put(loc, accumulator.left);
-                    break;
-                case '8':
-                    if (drops.get(0).containsKey(loc) && accumulator.left.isEmpty())
-                        accumulator.left = drops.get(0).remove(loc);
-                    else if (drops.get(0).containsKey(loc) && accumulator.right.isEmpty())
-                        accumulator.right = drops.get(0).remove(loc);
-                    else if (!drops.get(8).containsKey(loc) && !accumulator.left.isEmpty())
-                        drops.get(8).put(loc, accumulator.left);
-                    break;
-                case '9':
-                    if (drops.get(0).containsKey(loc) && accumulator.left.isEmpty())
-                        accumulator.left = drops.get(0).remove(loc);
-                    else if (drops.get(0).containsKey(loc) && accumulator.right.isEmpty())
-                        accumulator.right = drops.get(0).remove(loc);
-                    else if (!drops.get(9).containsKey(loc) && !accumulator.left.isEmpty())
-                        drops.get(9).put(loc, accumulator.left);
-                    break;
-                case '?':
-                    accumulator.clear();
-                    break;
-                case '.':
-                    accumulator.print();
-                    accumulator.clear();
-                    break;
-                case ',':
-                    accumulator.print();
-                    break;
-                case 'X':
-                    break program;
+    static class Options {
+        // What the command line asks for. The daemon reads the options of
+        // every request the same way.
+        boolean detectCycles = false;
+        boolean compile = false;
+        boolean exact = false;
+        String profile = null;
+        Budget budget = Budget.UNLIMITED;
+        String code = null;
+        String inputFile = null;
+        String daemon = null;
+        String batch = null;
+        ProgramCache cache = null;
+        boolean analyze = false;
+        String explore = null;
+        String input;
+
+        static Options parse(String[] args) {
+            /**
+             * Reads the options, which come before the input. Anything after
+             * "--" is always input.
+             *
+             * @param args      the command-line arguments
+             * @return          the options, and the input they leave
+             */
+            Options options = new Options();
+            int first = 0;
+            for (; first < args.length; first++) {
+                if (args[first].equals("--detect-cycles")) {
+                    options.detectCycles = true;
+                } else if (args[first].equals("--compile")) {
+                    options.compile = true;
+                } else if (args[first].equals("--exact")) {
+                    options.exact = true;
+                } else if (args[first].equals("--profile")) {
+                    options.profile = "timeline-profile.json";
+                } else if (args[first].startsWith("--profile=")) {
+                    options.profile = args[first].substring("--profile=".length());
+                } else if (args[first].startsWith("--max-steps=")) {
+                    options.budget = options.budget.withSteps(limit("--max-steps", args[first].substring("--max-steps=".length())));
+                } else if (args[first].startsWith("--max-time=")) {
+                    long millis = limit("--max-time", args[first].substring("--max-time=".length()));
+                    options.budget = options.budget.withNanos(Math.min(millis, Long.MAX_VALUE / 2_000_000L) * 1_000_000L);
+                } else if (args[first].startsWith("--max-size=")) {
+                    options.budget = options.budget.withSize(limit("--max-size", args[first].substring("--max-size=".length())));
+                } else if (args[first].startsWith("--program=")) {
+                    options.code = args[first].substring("--program=".length());
+                } else if (args[first].startsWith("--input=")) {
+                    options.inputFile = args[first].substring("--input=".length());
+                } else if (args[first].startsWith("--batch=")) {
+                    options.batch = args[first].substring("--batch=".length());
+                } else if (args[first].startsWith("--explore=")) {
+                    options.explore = args[first].substring("--explore=".length());
+                } else if (args[first].equals("--analyze")) {
+                    options.analyze = true;
+                } else if (args[first].equals("--cache")) {
+                    options.cache = new ProgramCache(ProgramCache.DEFAULT_DIRECTORY);
+                } else if (args[first].startsWith("--cache=")) {
+                    options.cache = new ProgramCache(Path.of(args[first].substring("--cache=".length())));
+                } else if (args[first].equals("--daemon")) {
+                    options.daemon = TimelineDaemon.DEFAULT_SOCKET.toString();
+                } else if (args[first].startsWith("--daemon=")) {
+                    options.daemon = args[first].substring("--daemon=".length());
+                } else {
+                    if (args[first].equals("--")) {first++;}
+                    break;
+                }
             }
-            if (accumulator.isAmorphous || !accumulator.evaluate()) {
-                // System.out.println("ACCUMULATOR IS AMORPHOUS");
-                accumulator.amorphousClear();
-            }   
-            // System.out.println("Operator right now is " + operator);
-            switch(direction) {
-                case UP:
-                    //System.out.println("Going UP");
-                    loc.r = mod(loc.r - 1, code.length);
-                    break;
-                case LEFT:
-                    //System.out.println("Going LEFT");
-                    loc.c = mod(loc.c - 1, code[0].length);
-                    break;
-                case DOWN:
-                    //System.out.println("Going DOWN");
-                    loc.r = mod(loc.r + 1, code.length);
-                    break;
-                case RIGHT:
-                    //System.out.println("Going RIGHT");
-                    loc.c = mod(loc.c + 1, code[0].length);
-                    break;
+            options.input = String.join(" ", Arrays.copyOfRange(args, first, args.length));
+            if (options.inputFile != null && first < args.length) {
+                throw new RuntimeException("The Stdin Input comes from --input=" + options.inputFile + ", so there can't be any input after the options!");
+            } else if (options.batch != null && (options.inputFile != null || first < args.length)) {
+                throw new RuntimeException("The Stdin Inputs come from --batch=" + options.batch + ", so there can't be any other input!");
+            } else if (options.batch != null && options.profile != null) {
+                throw new RuntimeException("--profile only works on one run, not a --batch!");
+            } else if (options.explore != null && (options.inputFile != null || options.batch != null || first < args.length)) {
+                throw new RuntimeException("--explore=" + options.explore + " makes up the Stdin Inputs, so there can't be any other input!");
+            } else if (options.explore != null && options.profile != null) {
+                throw new RuntimeException("--profile only works on one run, not an --explore!");
             }
-            // System.out.println("\n"+ loc.x + " " + loc.y +  " Row Length:" + code.length);
+            return options;
+        }
+
+        TimelineEngine engine() {return new TimelineEngine(detectCycles, compile, budget, exact);}
+
+        Program retrieveCode() {
+            Program program = TimelineInterpreter.retrieveCode(code, cache);
+            return analyze ? TimelineInterpreter.analyze(program) : program;
         }
     }
+
+    private static Program analyze(Program program) {
+        /**
+         * Works out what the data pointer can reach before the program runs,
+         * and says so on stderr.
+         *
+         * @param program   the decoded timeline code
+         * @return          the same program
+         */
+        System.err.print(analysis(program));
+        return program;
+    }
+
+    static String analysis(Program program) {
+        /**
+         * Says what the data pointer can reach, along with a warning if it
+         * can never get to an X.
+         *
+         * @param program   the decoded timeline code
+         * @return          the lines to print on stderr
+         */
+        ControlFlow flow = program.flow();
+        String analysis = "Timeline program has " + flow + ".\n";
+        if (!flow.canTerminate()) {
+            analysis += "Timeline program can never terminate! No X can be reached from the top left corner.\n";
+        }
+        return analysis;
+    }
+
+    static String report(RunResult result) {
+        /**
+         * Says why a run did not terminate, the way the command line tells it.
+         *
+         * @param result    how the run ended
+         * @return          what to print on stderr, or null if it terminated
+         */
+        if (result.exitReason == RunResult.ExitReason.STUCK_IN_LOOP) {
+            return "\nTimeline program is stuck in a loop! It repeats every "
+                + result.cycleLength + " steps from step " + result.cycleStart
+                + " without printing anything.";
+        } else if (result.exitReason == RunResult.ExitReason.CANCELLED) {
+            return "\nTimeline program was cancelled after " + result.steps + " steps!";
+        } else if (result.exitReason != RunResult.ExitReason.TERMINATED) {
+            return "\nTimeline program was stopped after " + result.steps + " steps! It went over its "
+                + result.exitReason.name().toLowerCase().replace("_limit", "") + " limit.";
+        }
+        return null;
+    }
+
     public static void main(String[] args) {
-        stdinInput = String.join(" ", args).concat("\0").split("");
-        interpretCode();
+        Options options = Options.parse(args);
+        if (options.daemon != null) {
+            new TimelineDaemon(Path.of(options.daemon)).serve();
+            return;
+        } else if (options.explore != null) {
+            explore(options.retrieveCode(), options.explore, options.engine());
+            return;
+        } else if (options.batch != null) {
+            if (options.batch.equals("-") && options.code == null) {
+                throw new RuntimeException("--batch=- takes the Stdin Inputs from stdin, so the program has to come from --program=[FILE]!");
+            }
+            runBatch(options.retrieveCode(), retrieveInputs(options.batch), options.engine());
+            return;
+        }
+        StdinInput input;
+        if (options.inputFile == null) {
+            input = StdinInput.of(options.input);
+        } else if (options.inputFile.equals("-") && options.code == null) {
+            throw new RuntimeException("--input=- takes the Stdin Input from stdin, so the program has to come from --program=[FILE]!");
+        } else {
+            input = retrieveInput(options.inputFile);
+        }
+        interpretCode(options.retrieveCode(), input, options.engine(), options.profile);
     }
-}
\ No newline at end of file
+}
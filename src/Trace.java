@@ -0,0 +1,206 @@
+package src;
+import java.util.ArrayList;
+import java.util.List;
+
+public class Trace {
+    // Longest straight line a trace follows before it hands back to the interpreter.
+    public static final int MAX_LENGTH = 1 << 12;
+
+    public final long period;
+    public final long residue;
+    public final int exitCell;
+    public final Direction exitDirection;
+    public final int advances;
+    public final int length;
+    // Whether or not the trace neither prints nor passes the Stdin Input, so
+    // it can be part of a segment.
+    public final boolean pure;
+
+    // Items to pick up, as Values and Operators, and CLEAR, PRINT and
+    // PRINT_AND_CLEAR opcodes, in the order the data pointer meets them.
+    private final Object[] actions;
+    private final int prints;
+
+    // What the trace does when it starts with an empty accumulator.
+    public final String output;
+    public final Accumulator result;
+
+    // Where the accumulator is first cleared, and what the rest of the
+    // trace does from there, since the accumulator is empty either way.
+    public final int firstClear;
+    public final String tailOutput;
+    public final Accumulator tailResult;
+
+    private Trace(long period, long residue, int exitCell, Direction exitDirection, int advances, int length, Object[] actions, boolean input, Accumulator settings) {
+        this.period = period;
+        this.residue = residue;
+        this.exitCell = exitCell;
+        this.exitDirection = exitDirection;
+        this.advances = advances;
+        this.length = length;
+        this.actions = actions;
+
+        int prints = 0;
+        int firstClear = actions.length;
+        for (int i = 0; i < actions.length; i++) {
+            if (actions[i] == Opcode.PRINT || actions[i] == Opcode.PRINT_AND_CLEAR) {prints++;}
+            if (firstClear == actions.length && (actions[i] == Opcode.CLEAR || actions[i] == Opcode.PRINT_AND_CLEAR)) {
+                firstClear = i;
+            }
+        }
+        this.prints = prints;
+        this.pure = prints == 0 && !input;
+        this.firstClear = firstClear;
+
+        Accumulator accumulator = empty(settings);
+        StringBuilder output = new StringBuilder();
+        perform(0, actions.length, accumulator, output);
+        this.output = output.toString();
+        this.result = accumulator;
+
+        accumulator = empty(settings);
+        output = new StringBuilder();
+        perform(Math.min(firstClear + 1, actions.length), actions.length, accumulator, output);
+        this.tailOutput = output.toString();
+        this.tailResult = accumulator;
+    }
+
+    private static Accumulator empty(Accumulator settings) {
+        Accumulator accumulator = new Accumulator();
+        accumulator.sizeLimit = settings.sizeLimit;
+        accumulator.exact = settings.exact;
+        return accumulator;
+    }
+
+    public static boolean endsAt(Opcode opcode) {
+        /**
+         * Checks if a trace has to stop in front of the cell, because what the
+         * cell does depends on more than the layer.
+         *
+         * @param opcode    the cell
+         * @return          whether or not the cell ends a trace
+         */
+        switch (opcode) {
+            case TURN_CLOCKWISE_IF_TRUE:
+            case TURN_COUNTERCLOCKWISE_IF_TRUE:
+            case STORAGE0:
+            case STORAGE1:
+            case STORAGE2:
+            case STORAGE3:
+            case STORAGE4:
+            case STORAGE5:
+            case STORAGE6:
+            case STORAGE7:
+            case STORAGE8:
+            case STORAGE9:
+            case TERMINATE:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    public static Trace record(Machine machine) {
+        /**
+         * Follows the data pointer from where the machine is without running
+         * anything, until it meets a cell that ends a trace or the trace is
+         * too long. Everything on the way only depends on the layer, so the
+         * trace can be replayed whenever the data pointer comes back here on
+         * a layer that looks the same to every infinity cell it passed.
+         *
+         * @param machine   the machine at the start of the trace
+         * @return          the recorded trace
+         */
+        Program program = machine.program;
+        int cell = machine.cell;
+        Direction direction = machine.direction;
+        long layer = machine.layer;
+        long period = 1;
+        int advances = 0;
+        int length = 0;
+        boolean input = false;
+        List<Object> actions = new ArrayList<Object>();
+
+        for (; length < MAX_LENGTH; length++, cell = program.next(cell, direction)) {
+            Opcode opcode = program.opcode(cell);
+            if (endsAt(opcode)) {
+                break;
+            }
+            Object item = machine.pickUp(opcode, layer);
+            if (item != null) {
+                period = Machine.lcm(period, machine.period(opcode));
+                input |= opcode == Opcode.STDIN_INPUT;
+            }
+            if (item instanceof Direction) {
+                direction = (Direction)item;
+            } else if (item != null) {
+                actions.add(item);
+            } else {
+                switch (opcode) {
+                    case TURN_CLOCKWISE:
+                        direction = direction.turnClockwise();
+                        break;
+                    case TURN_COUNTERCLOCKWISE:
+                        direction = direction.turnCounterclockwise();
+                        break;
+                    case NEXT_LAYER:
+                        layer = (layer + 1 == machine.resetLayer) ? 0 : layer + 1;
+                        advances++;
+                        break;
+                    case HOP:
+                        cell = program.next(cell, direction);
+                        break;
+                    case CLEAR:
+                    case PRINT_AND_CLEAR:
+                    case PRINT:
+                        actions.add(opcode);
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+        return new Trace(period, machine.layer % period, cell, direction, advances, length, actions.toArray(),
+            input, machine.accumulator);
+    }
+
+    public boolean matches(long layer) {
+        if ((layer | period) == (int)(layer | period)) {
+            return (int)layer % (int)period == residue;
+        }
+        return layer % period == residue;
+    }
+    public int prints() {return prints;}
+    public int size() {return actions.length;}
+
+    public void perform(int from, int to, Accumulator accumulator, StringBuilder output) {
+        /**
+         * Performs part of the trace on an accumulator, the same way the
+         * machine would have one cell at a time.
+         *
+         * @param from          the first action to perform
+         * @param to            the action to stop before
+         * @param accumulator   the accumulator to perform the actions on
+         * @param output        where printed items go
+         */
+        for (int i = from; i < to; i++) {
+            Object action = actions[i];
+            if (action instanceof Value) {
+                accumulator.push((Value)action);
+            } else if (action instanceof Operator) {
+                accumulator.push((Operator)action);
+            } else {
+                if (action != Opcode.CLEAR) {
+                    output.append(accumulator.printout());
+                }
+                if (action != Opcode.PRINT) {
+                    accumulator.clear();
+                }
+                continue;
+            }
+            if (accumulator.isAmorphous || !accumulator.evaluate()) {
+                accumulator.amorphousClear();
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package src;
+import java.util.Arrays;
+
+public class TraceCache {
+    // A place has to be passed this many times before traces are recorded from it.
+    private static final int HOT = 16;
+    private static final int MAX_TRACES_PER_PLACE = 64;
+    private static final int MAX_TRACES = 1 << 16;
+
+    private static class Place {
+        int count = 0;
+        Trace[] traces = new Trace[4];
+    }
+
+    // Open addressing with linear probing, keyed by the cell times 4 plus
+    // the direction, like the layers of DropStore. A slot is free while its
+    // hit count is 0. Only hot places get a Place, so a cold one costs two
+    // ints and a null.
+    private int[] keys = new int[64];
+    private int[] hits = new int[64];
+    private Place[] places = new Place[64];
+    private int size = 0;
+    private int total = 0;
+
+    public Trace lookup(Machine machine) {
+        /**
+         * Finds the trace that starts where the machine is, recording one
+         * if the place is hot and there is room for it.
+         *
+         * @param machine   the machine about to run the trace
+         * @return          the trace, or null if the machine has to step
+         */
+        int key = machine.cell * 4 + machine.direction.ordinal();
+        int i = slot(key);
+        if (hits[i] == 0) {
+            if ((size + 1) * 2 > keys.length) {
+                grow();
+                i = slot(key);
+            }
+            keys[i] = key;
+            size++;
+        }
+        Place place = places[i];
+        if (place != null) {
+            for (int j = 0; j < place.count; j++) {
+                if (place.traces[j].matches(machine.layer)) {
+                    return place.traces[j];
+                }
+            }
+        }
+        if (hits[i] < HOT && ++hits[i] < HOT) {
+            return null;
+        }
+        if (place == null) {
+            place = places[i] = new Place();
+        }
+        if (place.count == MAX_TRACES_PER_PLACE || total == MAX_TRACES) {
+            return null;
+        }
+        if (place.count == place.traces.length) {
+            place.traces = Arrays.copyOf(place.traces, place.count * 2);
+        }
+        Trace trace = Trace.record(machine);
+        place.traces[place.count++] = trace;
+        total++;
+        return trace;
+    }
+
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private int slot(int key) {
+        int mask = keys.length - 1;
+        int i = hash(key) & mask;
+        while (hits[i] != 0 && keys[i] != key) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        int[] oldHits = hits;
+        Place[] oldPlaces = places;
+        keys = new int[oldKeys.length * 2];
+        hits = new int[oldKeys.length * 2];
+        places = new Place[oldKeys.length * 2];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldHits[i] != 0) {
+                int j = slot(oldKeys[i]);
+                keys[j] = oldKeys[i];
+                hits[j] = oldHits[i];
+                places[j] = oldPlaces[i];
+            }
+        }
+    }
+}
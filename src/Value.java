@@ -0,0 +1,462 @@
+package src;
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+
+public class Value {
+
+    public static enum Type {
+        STRING,
+        INT,
+        DOUBLE,
+        BOOLEAN;
+    }
+
+    public static final Value EMPTY = new Value(Type.STRING, "", 0, 0, false);
+    public static final Value TRUE = new Value(Type.BOOLEAN, "TRUE", 0, 0, false);
+    public static final Value FALSE = new Value(Type.BOOLEAN, "FALSE", 0, 0, false);
+
+    private static final BigInteger LONG_MIN = BigInteger.valueOf(Long.MIN_VALUE);
+    private static final BigInteger LONG_MAX = BigInteger.valueOf(Long.MAX_VALUE);
+
+    // Strings up to this long are copied whole by CONCAT and REPEAT. Longer
+    // ones become ropes, and a short piece added to the end of a rope is
+    // copied into its last piece as long as that stays this short.
+    private static final int ROPE_MIN = 256;
+    private static final int MAX_LENGTH = Integer.MAX_VALUE - 8;
+
+    // The states of reading a text as a number, one character at a time:
+    // nothing read yet, a leading minus, the digits of an integer, the
+    // '.', 'e' or 'E' of a float, the digits after it, and not a number.
+    // What a text does to each state is packed into an int, three bits a
+    // state, so what a rope does is worked out from what its pieces do
+    // without reading them again.
+    private static final int START = 0;
+    private static final int SIGN = 1;
+    private static final int INTEGER = 2;
+    private static final int SEPARATOR = 3;
+    private static final int FRACTION = 4;
+    private static final int NONE = 5;
+    private static final int STATES = 6;
+
+    public final Type type;
+    public final int intValue;
+    public final double doubleValue;
+    private final boolean integral;
+    private String text;
+
+    // A rope is a string left as the values it was built from, either
+    // front followed by back, or front repeated times times with no back.
+    private final Value front;
+    private final Value back;
+    private final int times;
+    private final int length;
+    // What the text does to the states of reading it as a number, or 0 if
+    // that is not worked out yet.
+    private int shape;
+
+    private Value(Type type, String text, int intValue, double doubleValue, boolean integral) {
+        this.type = type;
+        this.text = text;
+        this.intValue = intValue;
+        this.doubleValue = doubleValue;
+        this.integral = integral;
+        this.front = null;
+        this.back = null;
+        this.times = 0;
+        this.length = (text == null) ? -1 : text.length();
+    }
+
+    private Value(Value front, Value back, int times, int length, int shape) {
+        this.type = Type.STRING;
+        this.intValue = 0;
+        this.doubleValue = 0;
+        this.integral = false;
+        this.front = front;
+        this.back = back;
+        this.times = times;
+        this.length = length;
+        this.shape = shape;
+    }
+
+    public static Value of(String text) {
+        /**
+         * Classifies the text once so the accumulator never has to parse it
+         * again. A text is an integer if it is all digits with an optional
+         * leading minus, and a float if it also has exactly one '.', 'e' or
+         * 'E' between two runs of digits.
+         *
+         * Integers too wide for an int are kept as doubles, but they still
+         * read as integers, so integer operators reject them unless the
+         * arithmetic is exact.
+         *
+         * @param text      the text to classify
+         * @return          the classified value
+         */
+        if (text.isEmpty()) {return EMPTY;}
+        if (text.equals("TRUE")) {return TRUE;}
+        if (text.equals("FALSE")) {return FALSE;}
+
+        int length = text.length();
+        int start = (text.charAt(0) == '-') ? 1 : 0;
+        int digits = start;
+        while (digits < length && isDigit(text.charAt(digits))) {digits++;}
+        if (digits == start) {
+            return new Value(Type.STRING, text, 0, 0, false);
+        }
+        if (digits == length) {
+            // Counted down from zero, since there is one more negative long than positive.
+            long n = 0;
+            boolean isLong = true;
+            for (int i = start; i < length && isLong; i++) {
+                int digit = text.charAt(i) - '0';
+                isLong = n >= (Long.MIN_VALUE + digit) / 10;
+                n = n * 10 - digit;
+            }
+            if (isLong && start == 0) {
+                isLong = n != Long.MIN_VALUE;
+                n = -n;
+            }
+            if (!isLong || n < Integer.MIN_VALUE || n > Integer.MAX_VALUE) {
+                return new Wide(text, Double.parseDouble(text), isLong ? n : 0, isLong, null);
+            }
+            // "-0" parses to the double -0.0, which is not the int 0.
+            double d = (n == 0 && start == 1) ? -0.0 : n;
+            return new Value(Type.INT, text, (int)n, d, true);
+        }
+
+        char separator = text.charAt(digits);
+        int fraction = digits + 1;
+        while (fraction < length && isDigit(text.charAt(fraction))) {fraction++;}
+        if ((separator == '.' || separator == 'e' || separator == 'E') && fraction > digits + 1 && fraction == length) {
+            return new Value(Type.DOUBLE, text, 0, Double.parseDouble(text), false);
+        }
+        return new Value(Type.STRING, text, 0, 0, false);
+    }
+
+    public static Value of(int n) {
+        return new Value(Type.INT, null, n, n, true);
+    }
+
+    public static Value of(long n) {
+        /**
+         * Wraps an exact integer result. Results that fit an int are ints
+         * like any other, and wider ones read as integers too wide for one.
+         *
+         * @param n         the integer result
+         * @return          the value of the result
+         */
+        if (n >= Integer.MIN_VALUE && n <= Integer.MAX_VALUE) {
+            return of((int)n);
+        }
+        return new Wide(null, n, n, true, null);
+    }
+
+    public static Value of(BigInteger n) {
+        if (n.compareTo(LONG_MIN) >= 0 && n.compareTo(LONG_MAX) <= 0) {
+            return of(n.longValue());
+        }
+        return new Wide(null, n.doubleValue(), 0, false, n);
+    }
+
+    public static Value of(double n) {
+        /**
+         * Wraps a double result. Results that print in scientific notation,
+         * or as Infinity or NaN, do not read back as floats, so they are
+         * plain strings from now on.
+         *
+         * @param n         the double result
+         * @return          the value of the result
+         */
+        double magnitude = Math.abs(n);
+        if (magnitude == 0 || (magnitude >= 1e-3 && magnitude < 1e7)) {
+            return new Value(Type.DOUBLE, null, 0, n, false);
+        }
+        return new Value(Type.STRING, Double.toString(n), 0, 0, false);
+    }
+
+    public static Value of(boolean b) {return b ? TRUE : FALSE;}
+
+    public static Value concat(Value front, Value back) {
+        /**
+         * Joins two values without copying them, unless the result is short
+         * or reads as a number, in which case it is copied and classified
+         * like any other text. Whether it reads as one is worked out from
+         * its two halves, so neither is read again.
+         *
+         * @param front     the value that comes first
+         * @param back      the value that comes after it
+         * @return          the joined value, or null if it would be longer
+         *                  than a String can be
+         */
+        long length = (long)front.length() + back.length();
+        if (length > MAX_LENGTH) {
+            return null;
+        }
+        if (length <= ROPE_MIN) {
+            return of(front.text() + back.text());
+        }
+        int shape = follow(front.shape(), back.shape());
+        if (isNumber(shape)) {
+            return of(front.text() + back.text());
+        }
+        front = front.piece();
+        back = back.piece();
+        // Appending one short piece at a time is the usual way to build a
+        // long string, so pieces are packed into the last one of the rope.
+        if (front.isRope() && front.back != null && !front.back.isRope()
+                && front.back.length() + back.length() <= ROPE_MIN) {
+            return new Value(front.front.piece(), of(front.back.text() + back.text()), 1, (int)length, shape);
+        }
+        return new Value(front, back, 1, (int)length, shape);
+    }
+
+    public static Value repeat(Value part, int times) {
+        /**
+         * Repeats a value without copying it, unless the result is short or
+         * reads as a number. Repeating zero or fewer times
+         * leaves the empty value.
+         *
+         * @param part      the value to repeat
+         * @param times     how many times to repeat it
+         * @return          the repeated value, or null if it would be longer
+         *                  than a String can be
+         */
+        if (times <= 0 || part.isEmpty()) {
+            return EMPTY;
+        } else if (times == 1) {
+            return part;
+        }
+        long length = (long)part.length() * times;
+        if (length > MAX_LENGTH) {
+            return null;
+        }
+        if (length <= ROPE_MIN) {
+            return of(part.text().repeat(times));
+        }
+        int shape = 0;
+        for (int square = part.shape(), n = times; n > 0; n >>= 1, square = follow(square, square)) {
+            if ((n & 1) != 0) {shape = (shape == 0) ? square : follow(shape, square);}
+        }
+        if (isNumber(shape)) {
+            return of(part.text().repeat(times));
+        }
+        return new Value(part.piece(), null, times, (int)length, shape);
+    }
+
+    private boolean isRope() {return front != null && text == null;}
+
+    private Value piece() {
+        /**
+         * Returns the value to build a new rope from. A rope that was already
+         * copied into one String is replaced by that String, so the pieces it
+         * was built from can be collected.
+         */
+        if (front == null || text == null) {
+            return this;
+        }
+        Value piece = new Value(Type.STRING, text, 0, 0, false);
+        piece.shape = shape;
+        return piece;
+    }
+
+    private int shape() {
+        /**
+         * Returns what the text does to each state of reading it as a
+         * number. It is worked out once, and stops reading as soon as no
+         * state could still end in a number.
+         */
+        if (shape == 0) {
+            String text = text();
+            int[] states = {START, SIGN, INTEGER, SEPARATOR, FRACTION, NONE};
+            int alive = NONE;
+            for (int i = 0; i < text.length() && alive > 0; i++) {
+                char c = text.charAt(i);
+                alive = 0;
+                for (int j = 0; j < NONE; j++) {
+                    states[j] = next(states[j], c);
+                    alive += (states[j] != NONE) ? 1 : 0;
+                }
+            }
+            int packed = 0;
+            for (int j = 0; j < STATES; j++) {
+                packed |= states[j] << (3 * j);
+            }
+            shape = packed;
+        }
+        return shape;
+    }
+
+    private static int next(int state, char c) {
+        switch (state) {
+            case START: return (c == '-') ? SIGN : isDigit(c) ? INTEGER : NONE;
+            case SIGN: return isDigit(c) ? INTEGER : NONE;
+            case INTEGER: return isDigit(c) ? INTEGER : (c == '.' || c == 'e' || c == 'E') ? SEPARATOR : NONE;
+            case SEPARATOR:
+            case FRACTION: return isDigit(c) ? FRACTION : NONE;
+            default: return NONE;
+        }
+    }
+
+    private static int follow(int first, int then) {
+        /**
+         * Returns the shape of one text followed by another.
+         */
+        int packed = 0;
+        for (int j = 0; j < STATES; j++) {
+            int middle = (first >>> (3 * j)) & 7;
+            packed |= ((then >>> (3 * middle)) & 7) << (3 * j);
+        }
+        return packed;
+    }
+
+    private static boolean isNumber(int shape) {
+        /**
+         * Checks if a text of this shape reads as a number. Only numbers
+         * matter, since the other classified texts, "", "TRUE" and "FALSE",
+         * are all short.
+         */
+        int end = shape & 7;
+        return end == INTEGER || end == FRACTION;
+    }
+
+    private static boolean isDigit(char c) {return c >= '0' && c <= '9';}
+
+    public boolean isEmpty() {return this == EMPTY;}
+    public boolean isInt() {return type == Type.INT;}
+    public boolean isIntegral() {return integral;}
+    public boolean isLong() {return type == Type.INT || (this instanceof Wide && ((Wide)this).isLong);}
+    public long longValue() {return (type == Type.INT) ? intValue : ((Wide)this).longValue;}
+    public boolean isNumber() {return type == Type.INT || type == Type.DOUBLE;}
+    public boolean isFalse() {return this == FALSE;}
+    public boolean isNullCharacter() {return type == Type.STRING && length() == 1 && text().equals("\0");}
+    public int length() {return (length >= 0) ? length : text().length();}
+    // Computed numbers count as nothing, since they never grow past a few
+    // characters, except for exact integers wider than a long, which count
+    // as about as many digits as they will print as.
+    public int size() {
+        if (length < 0 && this instanceof Wide && ((Wide)this).bigValue != null) {
+            return (int)Math.min(((Wide)this).bigValue.bitLength() * 0.30103 + 2, Integer.MAX_VALUE);
+        }
+        return Math.max(length, 0);
+    }
+
+    public BigInteger bigValue() {
+        /**
+         * Returns an integer value as a BigInteger, for exact arithmetic
+         * that no longer fits a long.
+         *
+         * @return          the integer
+         */
+        if (this instanceof Wide && ((Wide)this).bigValue != null) {
+            return ((Wide)this).bigValue;
+        }
+        return isLong() ? BigInteger.valueOf(longValue()) : new BigInteger(text());
+    }
+
+    public String text() {
+        /**
+         * Returns the value as text, formatting computed numbers the first
+         * time they are needed as text.
+         *
+         * @return          the text of the value
+         */
+        if (text == null) {
+            if (front != null) {
+                flatten();
+            } else if (type == Type.INT) {
+                text = Integer.toString(intValue);
+            } else if (this instanceof Wide) {
+                text = isLong() ? Long.toString(longValue()) : bigValue().toString();
+            } else {
+                text = Double.toString(doubleValue);
+            }
+        }
+        return text;
+    }
+
+    private void flatten() {
+        /**
+         * Copies a rope into one String. Ropes built one piece at a time
+         * nest as deep as they have pieces, so the pieces are walked with a
+         * stack of their own instead of by recursion.
+         */
+        StringBuilder flat = new StringBuilder(length);
+        ArrayDeque<Value> pending = new ArrayDeque<Value>();
+        pending.push(this);
+        while (!pending.isEmpty()) {
+            Value value = pending.pop();
+            if (!value.isRope()) {
+                flat.append(value.text());
+            } else if (value.back != null) {
+                pending.push(value.back);
+                pending.push(value.front);
+            } else {
+                String part = value.front.text();
+                for (int i = 0; i < value.times; i++) {
+                    flat.append(part);
+                }
+            }
+        }
+        text = flat.toString();
+    }
+
+    public String prefix(int n) {
+        /**
+         * Returns up to the first n characters of the value, without copying
+         * a rope into one String to get them.
+         *
+         * @param n         how many characters to return at most
+         * @return          the start of the text of the value
+         */
+        if (!isRope()) {
+            String text = text();
+            return (text.length() <= n) ? text : text.substring(0, n);
+        }
+        StringBuilder start = new StringBuilder(n);
+        ArrayDeque<Value> pending = new ArrayDeque<Value>();
+        pending.push(this);
+        while (!pending.isEmpty() && start.length() < n) {
+            Value value = pending.pop();
+            if (!value.isRope()) {
+                start.append(value.prefix(n - start.length()));
+            } else if (value.back != null) {
+                pending.push(value.back);
+                pending.push(value.front);
+            } else {
+                String part = value.front.prefix(n);
+                for (int i = 0; i < value.times && start.length() < n; i++) {
+                    start.append(part, 0, Math.min(part.length(), n - start.length()));
+                }
+            }
+        }
+        return start.toString();
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        // Values with the same text were classified the same way, so they behave the same.
+        return this == other || (other instanceof Value && text().equals(((Value)other).text()));
+    }
+
+    @Override
+    public int hashCode() {return text().hashCode();}
+
+    @Override
+    public String toString() {return text();}
+
+    // Integers too wide for an int keep what exact arithmetic needs of them
+    // here, so every other value stays as small as it was: the long, if they
+    // fit one, or else the BigInteger exact arithmetic made, if it made one.
+    private static final class Wide extends Value {
+        private final long longValue;
+        private final boolean isLong;
+        private final BigInteger bigValue;
+
+        Wide(String text, double doubleValue, long longValue, boolean isLong, BigInteger bigValue) {
+            super(Type.DOUBLE, text, 0, doubleValue, true);
+            this.longValue = longValue;
+            this.isLong = isLong;
+            this.bigValue = bigValue;
+        }
+    }
+}
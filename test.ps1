@@ -19,6 +19,16 @@ function Assert-Equals {
     }
 }
 
+function Assert-ExitCode {
+    param (
+        [Parameter(Mandatory = $true)]$Expected
+    )
+    
+    if ($LASTEXITCODE -ne $Expected) {
+        Write-Error "Exit code does not match expected results.`nEXIT CODE: $LASTEXITCODE`nEXPECTED: $Expected"
+    }
+}
+
 # Timeline Interpreter Location
 $interp = "$PSScriptRoot\src\TimelineInterpreter.java"
 
@@ -49,6 +59,34 @@ Get-Content "$examples\math_operators.timeline" | java -ea "$interp" |
     Assert-Equals ("4") &&
 Get-Content "$examples\vertical_looping.timeline" | java -ea "$interp" |
     Assert-Equals ("a") &&
+Get-Content "$examples\drop_pickup.timeline" | java -ea "$interp" |
+    Assert-Equals ("a") &&
+Get-Content "$examples\one_row.timeline" | java -ea "$interp" |
+    Assert-Equals ("AA") &&
+Get-Content "$examples\silent_loop.timeline" | java -ea "$interp" --detect-cycles |
+    Assert-Equals ("A") && Assert-ExitCode 1 &&
+Get-Content "$examples\silent_loop.timeline" | java -ea "$interp" --max-steps=1000 |
+    Assert-Equals ("A") && Assert-ExitCode 1 &&
+Get-Content "$examples\silent_loop.timeline" | java -ea "$interp" --max-time=200 |
+    Assert-Equals ("A") && Assert-ExitCode 1 &&
+Get-Content "$examples\exact_multiply.timeline" | java -ea "$interp" |
+    Assert-Equals ("410065399") &&
+Get-Content "$examples\exact_multiply.timeline" | java -ea "$interp" --exact |
+    Assert-Equals ("8999999991") &&
+Get-Content "$examples\exact_power.timeline" | java -ea "$interp" |
+    Assert-Equals ("0") &&
+Get-Content "$examples\exact_power.timeline" | java -ea "$interp" --exact |
+    Assert-Equals ("197352587024076973231046656") &&
+Get-Content "$examples\exact_shift_left.timeline" | java -ea "$interp" |
+    Assert-Equals ("0") &&
+Get-Content "$examples\exact_shift_left.timeline" | java -ea "$interp" --exact |
+    Assert-Equals ("384") &&
+Get-Content "$examples\exact_shift_out.timeline" | java -ea "$interp" |
+    Assert-Equals ("1073741822") &&
+Get-Content "$examples\exact_shift_out.timeline" | java -ea "$interp" --exact |
+    Assert-Equals ("0") &&
+Get-Content "$examples\segment_turns.timeline" | java -ea "$interp" --max-steps=20000 |
+    Assert-Equals ("Aa" * 121 + "A") && Assert-ExitCode 1 &&
 ForEach-Object 'foo';
 
 if ($Error -or !$?) { 